@@ -0,0 +1,81 @@
+package com.smallworld.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.io.DirectoryLoader;
+import com.smallworld.io.TransactionStreamReader;
+import com.smallworld.metrics.MetricsSink;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Loading a directory of hourly exports with the parallel DirectoryLoader at growing parser counts, against
+ * reading the same files one after the other on a single thread. On a machine with enough cores the load
+ * time should fall close to linearly with the parsers until the single consumer becomes the bottleneck.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DirectoryLoadBenchmark {
+
+    @Param({"1000000"})
+    private long rows;
+
+    @Param({"24"})
+    private int files;
+
+    @Param({"1", "2", "4", "8"})
+    private int parallelism;
+
+    private Path directory;
+    private DirectoryLoader loader;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        directory = Files.createTempDirectory("exports");
+        List<Path> paths = new ArrayList<>();
+        for (int hour = 0; hour < files; hour++) {
+            paths.add(directory.resolve(String.format("transactions-%02d.json", hour)));
+        }
+        new TransactionGenerator(rows, 2, 10_000, 1.2).writeJsonFiles(paths, false);
+        loader = new DirectoryLoader(new ObjectMapper(), MetricsSink.NONE, parallelism,
+                DirectoryLoader.DEFAULT_BATCH_SIZE, 4 * parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public TransactionDataFetcher loadDirectory() throws IOException {
+        TransactionDataFetcher fetcher = new TransactionDataFetcher();
+        loader.load(directory, fetcher::appendBatch);
+        return fetcher;
+    }
+
+    @Benchmark
+    public TransactionDataFetcher readFilesSequentially() throws IOException {
+        TransactionDataFetcher fetcher = new TransactionDataFetcher();
+        TransactionStreamReader reader = new TransactionStreamReader();
+        for (Path file : DirectoryLoader.findFiles(directory)) {
+            reader.read(file, fetcher::append);
+        }
+        return fetcher;
+    }
+}
@@ -0,0 +1,71 @@
+package com.smallworld.benchmark;
+
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.TransactionQueries;
+import com.smallworld.data.Transaction;
+import com.smallworld.metrics.FetcherMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the metrics decorator: the plain fetcher against the instrumented one with recording switched off
+ * and on, for an O(1) query and a scanning one. The plain and disabled scores should be indistinguishable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstrumentationBenchmark {
+
+    @Param({"100000"})
+    private long rows;
+
+    private TransactionQueries plain;
+    private TransactionQueries disabled;
+    private TransactionQueries enabled;
+
+    @Setup(Level.Trial)
+    public void load() {
+        TransactionDataFetcher fetcher = new TransactionDataFetcher();
+        new TransactionGenerator(rows, 2, 10_000, 1.2).generate(fetcher::append);
+        plain = fetcher;
+        FetcherMetrics disabledMetrics = new FetcherMetrics();
+        disabledMetrics.setEnabled(false);
+        disabled = disabledMetrics.instrument(fetcher);
+        enabled = new FetcherMetrics().instrument(fetcher);
+    }
+
+    @Benchmark
+    public double totalPlain() {
+        return plain.getTotalTransactionAmount();
+    }
+
+    @Benchmark
+    public double totalDisabled() {
+        return disabled.getTotalTransactionAmount();
+    }
+
+    @Benchmark
+    public double totalEnabled() {
+        return enabled.getTotalTransactionAmount();
+    }
+
+    @Benchmark
+    public List<Transaction> topTransactionsPlain() {
+        return plain.getTopTransactionsByAmount(100);
+    }
+
+    @Benchmark
+    public List<Transaction> topTransactionsDisabled() {
+        return disabled.getTopTransactionsByAmount(100);
+    }
+
+    @Benchmark
+    public List<Transaction> topTransactionsEnabled() {
+        return enabled.getTopTransactionsByAmount(100);
+    }
+}
@@ -0,0 +1,95 @@
+package com.smallworld.benchmark;
+
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.Transaction;
+import com.smallworld.io.TransactionStreamReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a fetcher, from rows already on the heap and through the JSON load path Main uses. The JSON
+ * benchmarks create their reader per call, so its string dictionary starts cold as in a fresh process.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark {
+
+    @Param({"1000", "1000000"})
+    private long rows;
+
+    @Param({"1", "4"})
+    private int issueFanOut;
+
+    @Param({"100", "10000", "1000000"})
+    private int clients;
+
+    @Param({"0.0", "1.2"})
+    private double skew;
+
+    private List<Transaction> transactions;
+    private Path jsonFile;
+    private Path gzipFile;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        TransactionGenerator generator = new TransactionGenerator(rows, issueFanOut, clients, skew);
+        transactions = generator.toList();
+        jsonFile = Files.createTempFile("transactions", ".json");
+        gzipFile = Files.createTempFile("transactions", ".json.gz");
+        generator.writeJson(jsonFile, false);
+        generator.writeJson(gzipFile, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Files.deleteIfExists(jsonFile);
+        Files.deleteIfExists(gzipFile);
+    }
+
+    @Benchmark
+    public TransactionDataFetcher bulkLoad() {
+        return new TransactionDataFetcher(transactions);
+    }
+
+    @Benchmark
+    public TransactionDataFetcher append() {
+        TransactionDataFetcher fetcher = new TransactionDataFetcher();
+        for (Transaction transaction : transactions) {
+            fetcher.append(transaction);
+        }
+        return fetcher;
+    }
+
+    @Benchmark
+    public TransactionDataFetcher readJson() throws IOException {
+        TransactionDataFetcher fetcher = new TransactionDataFetcher();
+        TransactionStreamReader reader = new TransactionStreamReader();
+        reader.read(jsonFile, fetcher::append);
+        return fetcher;
+    }
+
+    @Benchmark
+    public TransactionDataFetcher readJsonMapped() throws IOException {
+        TransactionDataFetcher fetcher = new TransactionDataFetcher();
+        TransactionStreamReader reader = new TransactionStreamReader();
+        reader.readMapped(jsonFile, fetcher::append);
+        return fetcher;
+    }
+
+    @Benchmark
+    public TransactionDataFetcher readGzipJson() throws IOException {
+        TransactionDataFetcher fetcher = new TransactionDataFetcher();
+        TransactionStreamReader reader = new TransactionStreamReader();
+        reader.read(gzipFile, fetcher::append);
+        return fetcher;
+    }
+}
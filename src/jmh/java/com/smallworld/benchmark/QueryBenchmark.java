@@ -0,0 +1,127 @@
+package com.smallworld.benchmark;
+
+import com.smallworld.QueryPlan;
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.TransactionReport;
+import com.smallworld.data.Transaction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every public query of TransactionDataFetcher over a fetcher loaded once per trial. Larger data sets are run
+ * with e.g. -p rows=50000000 and a matching -jvmArgs -Xmx.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+
+    @Param({"1000", "1000000"})
+    private long rows;
+
+    @Param({"1", "4"})
+    private int issueFanOut;
+
+    @Param({"100", "10000", "1000000"})
+    private int clients;
+
+    @Param({"0.0", "1.2"})
+    private double skew;
+
+    private TransactionDataFetcher fetcher;
+    private String heaviestSender;
+    private QueryPlan reportPlan;
+
+    @Setup(Level.Trial)
+    public void load() {
+        TransactionGenerator generator = new TransactionGenerator(rows, issueFanOut, clients, skew);
+        fetcher = new TransactionDataFetcher();
+        generator.generate(fetcher::append);
+        heaviestSender = generator.getHeaviestSender();
+        //the same metrics Main prints
+        reportPlan = new QueryPlan()
+                .totalAmount()
+                .totalAmountSentBy(heaviestSender)
+                .maxAmount()
+                .topTransactions(3)
+                .uniqueClients()
+                .openComplianceIssues(heaviestSender)
+                .solvedIssueMessages()
+                .unsolvedIssueIds()
+                .transactionsByBeneficiaryName()
+                .topSender();
+    }
+
+    @Benchmark
+    public double getTotalTransactionAmount() {
+        return fetcher.getTotalTransactionAmount();
+    }
+
+    @Benchmark
+    public double getTotalTransactionAmountSentBy() {
+        return fetcher.getTotalTransactionAmountSentBy(heaviestSender);
+    }
+
+    @Benchmark
+    public double getMaxTransactionAmount() {
+        return fetcher.getMaxTransactionAmount();
+    }
+
+    @Benchmark
+    public long countUniqueClients() {
+        return fetcher.countUniqueClients();
+    }
+
+    @Benchmark
+    public boolean hasOpenComplianceIssues() {
+        return fetcher.hasOpenComplianceIssues(heaviestSender);
+    }
+
+    @Benchmark
+    public List<Transaction> getTransactionsByClient() {
+        return fetcher.getTransactionsByClient(heaviestSender);
+    }
+
+    @Benchmark
+    public Map<String, Transaction> getTransactionsByBeneficiaryName() {
+        return fetcher.getTransactionsByBeneficiaryName();
+    }
+
+    @Benchmark
+    public Set<Integer> getUnsolvedIssueIds() {
+        return fetcher.getUnsolvedIssueIds();
+    }
+
+    @Benchmark
+    public List<String> getAllSolvedIssueMessages() {
+        return fetcher.getAllSolvedIssueMessages();
+    }
+
+    @Benchmark
+    public List<Transaction> getTop3TransactionsByAmount() {
+        return fetcher.getTop3TransactionsByAmount();
+    }
+
+    @Benchmark
+    public List<Transaction> getTopTransactionsByAmount() {
+        return fetcher.getTopTransactionsByAmount(100);
+    }
+
+    @Benchmark
+    public Optional<String> getTopSender() {
+        return fetcher.getTopSender();
+    }
+
+    @Benchmark
+    public TransactionReport run() {
+        return fetcher.run(reportPlan);
+    }
+}
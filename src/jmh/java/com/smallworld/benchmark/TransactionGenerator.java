@@ -0,0 +1,155 @@
+package com.smallworld.benchmark;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.smallworld.data.Transaction;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Deterministic synthetic transactions shaped like the export: every other transaction carries issueFanOut
+ * issue rows, half of them solved, and senders are drawn from a Zipf distribution over the client names.
+ */
+public class TransactionGenerator {
+
+    private static final long SEED = 42;
+
+    private final long rows;
+    private final int issueFanOut;
+    private final String[] clients;
+    private final double[] senderCdf;
+
+    /**
+     * @param rows        number of rows to produce, issue fan-out included
+     * @param issueFanOut rows per transaction with issues, 0 for no issues at all
+     * @param clients     number of distinct client names
+     * @param skew        Zipf exponent of the sender distribution, 0 for uniform
+     */
+    public TransactionGenerator(long rows, int issueFanOut, int clients, double skew) {
+        this.rows = rows;
+        this.issueFanOut = issueFanOut;
+        this.clients = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            this.clients[i] = "Client " + i;
+        }
+        this.senderCdf = new double[clients];
+        double sum = 0.0;
+        for (int i = 0; i < clients; i++) {
+            sum += 1.0 / Math.pow(i + 1, skew);
+            senderCdf[i] = sum;
+        }
+        for (int i = 0; i < clients; i++) {
+            senderCdf[i] /= sum;
+        }
+    }
+
+    /**
+     * Returns the name of the most frequent sender
+     */
+    public String getHeaviestSender() {
+        return clients[0];
+    }
+
+    public void generate(Consumer<Transaction> consumer) {
+        Random random = new Random(SEED);
+        long produced = 0;
+        int mtn = 0;
+        int issueId = 0;
+        while (produced < rows) {
+            mtn++;
+            double amount = 1 + random.nextInt(1_000_000) / 100.0;
+            String sender = clients[nextSender(random)];
+            String beneficiary = clients[random.nextInt(clients.length)];
+            int senderAge = 18 + random.nextInt(60);
+            int beneficiaryAge = 18 + random.nextInt(60);
+            if (issueFanOut > 0 && mtn % 2 == 0) {
+                for (int issue = 0; issue < issueFanOut && produced < rows; issue++) {
+                    issueId++;
+                    boolean solved = random.nextBoolean();
+                    String message = (solved ? "Solved issue " : "Open issue ") + issueId % 100;
+                    consumer.accept(new Transaction(mtn, amount, sender, senderAge, beneficiary, beneficiaryAge,
+                            issueId, solved, message));
+                    produced++;
+                }
+            } else {
+                consumer.accept(new Transaction(mtn, amount, sender, senderAge, beneficiary, beneficiaryAge,
+                        null, true, null));
+                produced++;
+            }
+        }
+    }
+
+    public List<Transaction> toList() {
+        List<Transaction> transactions = new ArrayList<>((int) Math.min(rows, Integer.MAX_VALUE - 8));
+        generate(transactions::add);
+        return transactions;
+    }
+
+    /**
+     * Writes the rows as a JSON array in the export format, gzip compressed if requested
+     */
+    public void writeJson(Path path, boolean gzip) throws IOException {
+        writeJsonFiles(Collections.singletonList(path), gzip);
+    }
+
+    /**
+     * Splits the rows into consecutive runs, one per file, as hourly exports would be. Every row of a
+     * transaction lands in the same file.
+     */
+    public void writeJsonFiles(List<Path> paths, boolean gzip) throws IOException {
+        //flushing after every row would make writing the large data sets needlessly slow
+        ObjectMapper objectMapper = new ObjectMapper().disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        List<JsonGenerator> generators = new ArrayList<>(paths.size());
+        try {
+            for (Path path : paths) {
+                OutputStream outputStream = gzip
+                        ? new GZIPOutputStream(Files.newOutputStream(path), 64 * 1024)
+                        : Files.newOutputStream(path);
+                JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8);
+                generators.add(generator);
+                generator.writeStartArray();
+            }
+            IOException[] failure = new IOException[1];
+            long[] written = new long[1];
+            int[] file = new int[1];
+            int[] lastMtn = {-1};
+            generate(transaction -> {
+                if (transaction.getMtn() != lastMtn[0]) {
+                    lastMtn[0] = transaction.getMtn();
+                    file[0] = (int) (written[0] * paths.size() / rows);
+                }
+                written[0]++;
+                if (failure[0] == null) {
+                    try {
+                        objectMapper.writeValue(generators.get(file[0]), transaction);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            for (JsonGenerator generator : generators) {
+                generator.writeEndArray();
+            }
+        } finally {
+            for (JsonGenerator generator : generators) {
+                generator.close();
+            }
+        }
+    }
+
+    private int nextSender(Random random) {
+        int index = Arrays.binarySearch(senderCdf, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, clients.length - 1);
+    }
+}
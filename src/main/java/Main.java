@@ -1,40 +1,99 @@
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smallworld.QueryPlan;
 import com.smallworld.TransactionDataFetcher;
+import com.smallworld.TransactionQueries;
+import com.smallworld.TransactionReport;
 import com.smallworld.data.Transaction;
+import com.smallworld.io.DirectoryLoadStats;
+import com.smallworld.io.DirectoryLoader;
+import com.smallworld.io.LoadStats;
+import com.smallworld.io.TransactionStreamReader;
+import com.smallworld.metrics.FetcherMetrics;
+import com.smallworld.metrics.MethodMetrics;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
 public class Main {
-    public static void main(String[] args) {
-        try {
-            InputStream inputStream = Main.class.getClassLoader().getResourceAsStream("transactions.json");
 
-            // Creating an ObjectMapper to parse the JSON data
-            ObjectMapper objectMapper = new ObjectMapper();
+    private static final String SNAPSHOT_EXTENSION = ".snapshot";
+    // Run with -Dsmallworld.metrics=true to record metrics, published over JMX and printed at the end
+    private static final String METRICS_PROPERTY = "smallworld.metrics";
 
-            List<Transaction> transactions = objectMapper.readValue(inputStream, new TypeReference<List<Transaction>>() {
-            });
+    public static void main(String[] args) {
+        try {
+            FetcherMetrics metrics = new FetcherMetrics();
+            metrics.setEnabled(Boolean.getBoolean(METRICS_PROPERTY));
+            if (metrics.isEnabled()) {
+                metrics.registerMBeans("main");
+            }
 
-            //list of transactions, you can pass it to TransactionDataFetcher
-            TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactions);
+            // Restoring a binary snapshot when one is given, loading every export in parallel when a directory is
+            // given, otherwise streaming the JSON rows one at a time straight into the fetcher, either from the
+            // file given as argument or the bundled resource
+            TransactionDataFetcher dataFetcher;
+            if (args.length > 0 && args[0].endsWith(SNAPSHOT_EXTENSION)) {
+                long start = System.nanoTime();
+                dataFetcher = TransactionDataFetcher.restore(Path.of(args[0]));
+                System.out.println("Restored snapshot in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } else if (args.length > 0 && Files.isDirectory(Path.of(args[0]))) {
+                dataFetcher = new TransactionDataFetcher();
+                int parsers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+                DirectoryLoader loader = new DirectoryLoader(new ObjectMapper(), metrics, parsers,
+                        DirectoryLoader.DEFAULT_BATCH_SIZE, 4 * parsers);
+                DirectoryLoadStats loadStats = loader.load(Path.of(args[0]), dataFetcher::appendBatch);
+                System.out.println("Loaded transactions: " + loadStats);
+                for (Map.Entry<Path, String> failure : loadStats.getFailedFiles().entrySet()) {
+                    System.out.println("Could not read " + failure.getKey() + " after loading "
+                            + loadStats.getFailedFileRows().get(failure.getKey()) + " of its rows: " + failure.getValue());
+                }
+            } else {
+                TransactionStreamReader reader = new TransactionStreamReader(new ObjectMapper(), metrics);
+                dataFetcher = new TransactionDataFetcher();
+                LoadStats loadStats;
+                if (args.length > 0) {
+                    loadStats = reader.readMapped(Path.of(args[0]), dataFetcher::append);
+                } else {
+                    try (InputStream inputStream = Main.class.getClassLoader().getResourceAsStream("transactions.json")) {
+                        loadStats = reader.read(inputStream, dataFetcher::append);
+                    }
+                }
+                System.out.println("Loaded transactions: " + loadStats);
+            }
+            // Writing a snapshot for the next start when a second argument is given
+            if (args.length > 1) {
+                dataFetcher.dump(Path.of(args[1]));
+            }
 
-            // Example usage of methods
-            double totalAmount = dataFetcher.getTotalTransactionAmount();
-            double totalTransactionAmountSentBy = dataFetcher.getTotalTransactionAmountSentBy("Aunt Polly");
-            double maxAmount = dataFetcher.getMaxTransactionAmount();
-            List<Transaction> top3Transactions = dataFetcher.getTop3TransactionsByAmount();
-            long uniqueClientsCount = dataFetcher.countUniqueClients();
-            boolean hasComplianceIssue = dataFetcher.hasOpenComplianceIssues("Tom Shelby");
-            List<String> solvedIssueMessages = dataFetcher.getAllSolvedIssueMessages();
-            Set<Integer> unsolvedIssueIds = dataFetcher.getUnsolvedIssueIds();
-            Map<String, Transaction> transactionsByBeneficiary = dataFetcher.getTransactionsByBeneficiaryName();
-            Optional<String> topSender = dataFetcher.getTopSender();
+            // Registering every metric of the report so they are computed together
+            TransactionQueries queries = metrics.instrument(dataFetcher);
+            TransactionReport report = queries.run(new QueryPlan()
+                    .totalAmount()
+                    .totalAmountSentBy("Aunt Polly")
+                    .maxAmount()
+                    .topTransactions(3)
+                    .uniqueClients()
+                    .openComplianceIssues("Tom Shelby")
+                    .solvedIssueMessages()
+                    .unsolvedIssueIds()
+                    .transactionsByBeneficiaryName()
+                    .topSender());
+            double totalAmount = report.getTotalAmount();
+            double totalTransactionAmountSentBy = report.getTotalAmountSentBy("Aunt Polly");
+            double maxAmount = report.getMaxAmount();
+            List<Transaction> top3Transactions = report.getTopTransactions();
+            long uniqueClientsCount = report.getUniqueClients();
+            boolean hasComplianceIssue = report.hasOpenComplianceIssues("Tom Shelby");
+            List<String> solvedIssueMessages = report.getSolvedIssueMessages();
+            Set<Integer> unsolvedIssueIds = report.getUnsolvedIssueIds();
+            Map<String, Transaction> transactionsByBeneficiary = report.getTransactionsByBeneficiaryName();
+            Optional<String> topSender = report.getTopSender();
 
             // Print the results
             System.out.println("Total Transaction Amount: " + totalAmount);
@@ -51,6 +110,13 @@ public class Main {
             System.out.println("Transactions by Beneficiary Name: " + transactionsByBeneficiary);
             System.out.println("Top Sender: " + topSender.orElse("None"));
 
+            if (metrics.isEnabled()) {
+                System.out.println("Load metrics: " + metrics.getLoad());
+                for (MethodMetrics methodMetrics : metrics.getMethods()) {
+                    System.out.println("Query metrics: " + methodMetrics);
+                }
+            }
+
         } catch (IOException e) {
             e.printStackTrace();
 
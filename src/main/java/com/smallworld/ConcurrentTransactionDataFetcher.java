@@ -0,0 +1,320 @@
+package com.smallworld;
+
+import com.smallworld.data.Transaction;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Variant of TransactionDataFetcher that can be shared between threads: any number of threads may append rows
+ * while others query. There is no global lock, totals are striped adders, per-client state lives in
+ * concurrent maps and list results are rebuilt only when the data they depend on has changed.
+ *
+ * Reads are weakly consistent: a query running during an append may or may not see that row. Once the writers
+ * are done the answers match TransactionDataFetcher over the same rows except where arrival order decides,
+ * which concurrent writers do not define. Equal sender totals go to the sender that comes first alphabetically
+ * and top k ties are ordered by mtn, solved messages come in issue id order and unsolved ids in no particular
+ * order, and a beneficiary keeps the transaction of whichever append ran last. Totals are DoubleAdder sums,
+ * added in another order than the fetcher's block sums, so they can differ in the last bits: by at most about
+ * n * 2^-53 times the sum of the absolute amounts for n rows.
+ */
+public class ConcurrentTransactionDataFetcher implements TransactionQueries {
+
+    private static final Comparator<Transaction> BY_AMOUNT_DESCENDING =
+            Comparator.comparingDouble(Transaction::getAmount).reversed().thenComparingInt(Transaction::getMtn);
+
+    //first row seen for every mtn
+    private final ConcurrentHashMap<Integer, Transaction> transactionsByMtn = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, IssueState> issuesById = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, DoubleAdder> sentBySender = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> openIssuesByClient = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Transaction> transactionsByBeneficiary = new ConcurrentHashMap<>();
+    private final Set<String> clients = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> unsolvedIssueIds = ConcurrentHashMap.newKeySet();
+    private final DoubleAdder totalAmount = new DoubleAdder();
+    private final DoubleAccumulator maxAmount = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+    //copy-on-write list, replaced whenever a new transaction enters the top 3
+    private final AtomicReference<List<Transaction>> top3 = new AtomicReference<>(Collections.emptyList());
+    //bumped on every issue change, the solved messages snapshot is rebuilt when it is behind
+    private final AtomicLong issueVersion = new AtomicLong();
+    private volatile Snapshot<List<String>> solvedMessages = new Snapshot<>(0, Collections.emptyList());
+    //bumped after every added transaction and issue change has been applied, see getDataVersion
+    private final AtomicLong dataVersion = new AtomicLong();
+
+    /**
+     * Adds a row of the transaction/issue join, with the same semantics as TransactionDataFetcher.append.
+     * Safe to call from several threads at once.
+     */
+    public void append(Transaction transaction) {
+        if (transactionsByMtn.putIfAbsent(transaction.getMtn(), transaction) == null) {
+            onTransactionAdded(transaction);
+        }
+        Integer issueId = transaction.getIssueId();
+        if (issueId == null) {
+            return;
+        }
+        IssueState issue = new IssueState(issueId, transaction);
+        IssueState existing = issuesById.putIfAbsent(issueId, issue);
+        if (existing == null) {
+            issueVersion.incrementAndGet();
+            issue.open(transaction.isIssueSolved());
+        } else if (transaction.isIssueSolved()) {
+            markIssueSolved(issueId);
+        }
+    }
+
+    /**
+     * Adds every row of the batch in order
+     */
+    public void appendBatch(Collection<Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            append(transaction);
+        }
+    }
+
+    /**
+     * Marks an open issue as solved. Returns false when the issue is unknown or already solved.
+     */
+    public boolean markIssueSolved(int issueId) {
+        IssueState issue = issuesById.get(issueId);
+        return issue != null && issue.solve();
+    }
+
+    private void onTransactionAdded(Transaction transaction) {
+        double amount = transaction.getAmount();
+        totalAmount.add(amount);
+        maxAmount.accumulate(amount);
+        sentBySender.computeIfAbsent(transaction.getSenderFullName(), name -> new DoubleAdder()).add(amount);
+        transactionsByBeneficiary.put(transaction.getBeneficiaryFullName(), transaction);
+        clients.add(transaction.getSenderFullName());
+        clients.add(transaction.getBeneficiaryFullName());
+        offerTop3(transaction);
+        dataVersion.incrementAndGet();
+    }
+
+    private void offerTop3(Transaction transaction) {
+        while (true) {
+            List<Transaction> current = top3.get();
+            if (current.size() == 3 && BY_AMOUNT_DESCENDING.compare(transaction, current.get(2)) >= 0) {
+                return;
+            }
+            List<Transaction> updated = new ArrayList<>(current);
+            updated.add(transaction);
+            updated.sort(BY_AMOUNT_DESCENDING);
+            if (updated.size() > 3) {
+                updated.remove(3);
+            }
+            if (top3.compareAndSet(current, Collections.unmodifiableList(updated))) {
+                return;
+            }
+        }
+    }
+
+    private void updateOpenIssues(Transaction transaction, int delta) {
+        String sender = transaction.getSenderFullName();
+        String beneficiary = transaction.getBeneficiaryFullName();
+        openIssuesByClient.computeIfAbsent(sender, name -> new LongAdder()).add(delta);
+        if (!Objects.equals(sender, beneficiary)) {
+            openIssuesByClient.computeIfAbsent(beneficiary, name -> new LongAdder()).add(delta);
+        }
+    }
+
+    @Override
+    public double getTotalTransactionAmount() {
+        return totalAmount.sum();
+    }
+
+    @Override
+    public double getTotalTransactionAmountSentBy(String senderFullName) {
+        DoubleAdder sent = sentBySender.get(senderFullName);
+        return sent == null ? 0.0 : sent.sum();
+    }
+
+    @Override
+    public double getMaxTransactionAmount() {
+        double max = maxAmount.get();
+        return max == Double.NEGATIVE_INFINITY ? 0.0 : max;
+    }
+
+    @Override
+    public long countUniqueClients() {
+        return clients.size();
+    }
+
+    @Override
+    public boolean hasOpenComplianceIssues(String clientFullName) {
+        LongAdder openIssues = openIssuesByClient.get(clientFullName);
+        return openIssues != null && openIssues.sum() > 0;
+    }
+
+    @Override
+    public Map<String, Transaction> getTransactionsByBeneficiaryName() {
+        return new HashMap<>(transactionsByBeneficiary);
+    }
+
+    /**
+     * Returns the identifiers of all open compliance issues, as a new set the caller owns
+     */
+    @Override
+    public Set<Integer> getUnsolvedIssueIds() {
+        return new HashSet<>(unsolvedIssueIds);
+    }
+
+    /**
+     * Returns a list of all solved issue messages ordered by issue id. The list is an immutable snapshot that
+     * is shared between callers until an issue changes.
+     */
+    @Override
+    public List<String> getAllSolvedIssueMessages() {
+        Snapshot<List<String>> snapshot = solvedMessages;
+        long version = issueVersion.get();
+        if (snapshot.version == version) {
+            return snapshot.value;
+        }
+        List<IssueState> solved = new ArrayList<>();
+        for (IssueState issue : issuesById.values()) {
+            if (issue.isSolved()) {
+                solved.add(issue);
+            }
+        }
+        solved.sort(Comparator.comparingInt(issue -> issue.issueId));
+        List<String> messages = new ArrayList<>(solved.size());
+        for (IssueState issue : solved) {
+            messages.add(issue.message);
+        }
+        //publishing under the version read before the scan, so changes made during it trigger another rebuild
+        solvedMessages = new Snapshot<>(version, Collections.unmodifiableList(messages));
+        return solvedMessages.value;
+    }
+
+    /**
+     * Returns a stamp bumped after each change is applied, so a result computed after reading version v reflects
+     * at least every change counted in v
+     */
+    @Override
+    public long getDataVersion() {
+        return dataVersion.get();
+    }
+
+    @Override
+    public List<Transaction> getTop3TransactionsByAmount() {
+        return top3.get();
+    }
+
+    /**
+     * Returns the k transactions with the highest amount sorted by amount descending, ties ordered by mtn.
+     * Keeps a bounded heap of k entries over a weakly consistent pass of the transactions.
+     */
+    @Override
+    public List<Transaction> getTopTransactionsByAmount(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative but was " + k);
+        }
+        if (k <= 3) {
+            List<Transaction> current = top3.get();
+            return current.subList(0, Math.min(k, current.size()));
+        }
+        //the head of the queue is the weakest of the kept transactions
+        PriorityQueue<Transaction> topTransactions = new PriorityQueue<>(BY_AMOUNT_DESCENDING.reversed());
+        for (Transaction transaction : transactionsByMtn.values()) {
+            if (topTransactions.size() < k) {
+                topTransactions.add(transaction);
+            } else if (BY_AMOUNT_DESCENDING.compare(transaction, topTransactions.peek()) < 0) {
+                topTransactions.poll();
+                topTransactions.add(transaction);
+            }
+        }
+        List<Transaction> sorted = new ArrayList<>(topTransactions);
+        sorted.sort(BY_AMOUNT_DESCENDING);
+        return sorted;
+    }
+
+    /**
+     * Returns the senderFullName of the sender with the most total sent amount. On equal totals the sender
+     * that comes first alphabetically wins.
+     */
+    @Override
+    public Optional<String> getTopSender() {
+        String topSender = null;
+        double topAmount = 0.0;
+        for (Map.Entry<String, DoubleAdder> entry : sentBySender.entrySet()) {
+            double amount = entry.getValue().sum();
+            if (topSender == null || amount > topAmount
+                    || (amount == topAmount && entry.getKey().compareTo(topSender) < 0)) {
+                topSender = entry.getKey();
+                topAmount = amount;
+            }
+        }
+        return Optional.ofNullable(topSender);
+    }
+
+    /**
+     * Open/solved state of an issue. Transitions are guarded by the issue's own monitor so that a solve racing
+     * with the thread that registered the issue never leaves a stale unsolved id or open count behind.
+     */
+    private final class IssueState {
+
+        private final int issueId;
+        private final String message;
+        private final Transaction transaction;
+        private boolean solved;
+        //whether this issue is currently counted as open
+        private boolean counted;
+
+        private IssueState(int issueId, Transaction transaction) {
+            this.issueId = issueId;
+            this.message = transaction.getIssueMessage();
+            this.transaction = transaction;
+        }
+
+        private synchronized void open(boolean solvedOnArrival) {
+            if (solved) {
+                return;
+            }
+            if (solvedOnArrival) {
+                solved = true;
+                issueVersion.incrementAndGet();
+            } else {
+                counted = true;
+                unsolvedIssueIds.add(issueId);
+                updateOpenIssues(transaction, 1);
+            }
+            dataVersion.incrementAndGet();
+        }
+
+        private synchronized boolean solve() {
+            if (solved) {
+                return false;
+            }
+            solved = true;
+            if (counted) {
+                counted = false;
+                unsolvedIssueIds.remove(issueId);
+                updateOpenIssues(transaction, -1);
+            }
+            issueVersion.incrementAndGet();
+            dataVersion.incrementAndGet();
+            return true;
+        }
+
+        private synchronized boolean isSolved() {
+            return solved;
+        }
+    }
+
+    private static final class Snapshot<T> {
+
+        private final long version;
+        private final T value;
+
+        private Snapshot(long version, T value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
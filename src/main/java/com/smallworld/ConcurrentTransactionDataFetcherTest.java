@@ -0,0 +1,137 @@
+package com.smallworld;
+
+import com.smallworld.data.Transaction;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentTransactionDataFetcherTest {
+
+    private static final int TRANSACTIONS = 20_000;
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+
+    @Test
+    public void test_ConcurrentAppendsAndReads_ShouldMatchSequentialFetcher() throws Exception {
+        List<Transaction> rows = generateRows();
+        ConcurrentTransactionDataFetcher concurrentFetcher = new ConcurrentTransactionDataFetcher();
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int writer = 0; writer < WRITERS; writer++) {
+            int offset = writer;
+            writers.add(executor.submit(() -> {
+                start.await();
+                for (int i = offset; i < rows.size(); i += WRITERS) {
+                    concurrentFetcher.append(rows.get(i));
+                }
+                return null;
+            }));
+        }
+        List<Future<?>> readers = new ArrayList<>();
+        for (int reader = 0; reader < READERS; reader++) {
+            readers.add(executor.submit(() -> {
+                start.await();
+                double lastTotal = 0.0;
+                long lastClients = 0;
+                while (writing.get()) {
+                    //totals and client counts only ever grow while rows are appended
+                    double total = concurrentFetcher.getTotalTransactionAmount();
+                    long clients = concurrentFetcher.countUniqueClients();
+                    assertTrue(total >= lastTotal);
+                    assertTrue(clients >= lastClients);
+                    lastTotal = total;
+                    lastClients = clients;
+
+                    List<Transaction> top3 = concurrentFetcher.getTop3TransactionsByAmount();
+                    assertTrue(top3.size() <= 3);
+                    for (int i = 1; i < top3.size(); i++) {
+                        assertTrue(top3.get(i - 1).getAmount() >= top3.get(i).getAmount());
+                    }
+                    assertTrue(concurrentFetcher.getMaxTransactionAmount() <= 1000.0);
+                    concurrentFetcher.getAllSolvedIssueMessages();
+                    concurrentFetcher.getTopSender();
+                    concurrentFetcher.hasOpenComplianceIssues("Client 7");
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(1, TimeUnit.MINUTES);
+        }
+        writing.set(false);
+        for (Future<?> reader : readers) {
+            reader.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        TransactionDataFetcher sequentialFetcher = new TransactionDataFetcher(rows);
+        assertEquals(sequentialFetcher.getTotalTransactionAmount(), concurrentFetcher.getTotalTransactionAmount(), 0.001);
+        assertEquals(sequentialFetcher.getMaxTransactionAmount(), concurrentFetcher.getMaxTransactionAmount(), 0.0);
+        assertEquals(sequentialFetcher.countUniqueClients(), concurrentFetcher.countUniqueClients());
+        assertEquals(sequentialFetcher.getTopSender(), concurrentFetcher.getTopSender());
+        assertEquals(sequentialFetcher.getUnsolvedIssueIds(), concurrentFetcher.getUnsolvedIssueIds());
+        assertEquals(mtnsOf(sequentialFetcher.getTop3TransactionsByAmount()),
+                mtnsOf(concurrentFetcher.getTop3TransactionsByAmount()));
+        assertEquals(mtnsOf(sequentialFetcher.getTopTransactionsByAmount(50)),
+                mtnsOf(concurrentFetcher.getTopTransactionsByAmount(50)));
+        assertEquals(sorted(sequentialFetcher.getAllSolvedIssueMessages()),
+                sorted(concurrentFetcher.getAllSolvedIssueMessages()));
+        assertEquals(sequentialFetcher.getTransactionsByBeneficiaryName().keySet(),
+                concurrentFetcher.getTransactionsByBeneficiaryName().keySet());
+        for (int client = 0; client < 50; client++) {
+            String name = "Client " + client;
+            assertEquals(sequentialFetcher.getTotalTransactionAmountSentBy(name),
+                    concurrentFetcher.getTotalTransactionAmountSentBy(name), 0.001);
+            assertEquals(sequentialFetcher.hasOpenComplianceIssues(name), concurrentFetcher.hasOpenComplianceIssues(name));
+        }
+    }
+
+    /**
+     * Builds transactions with unique amounts, where every third one has two issue rows and some issues are
+     * reported solved by a repeated row further down the list
+     */
+    private static List<Transaction> generateRows() {
+        Random random = new Random(42);
+        List<Transaction> rows = new ArrayList<>();
+        int issueId = 0;
+        for (int mtn = 0; mtn < TRANSACTIONS; mtn++) {
+            double amount = (mtn * 7919 % 100_000) / 100.0;
+            String sender = "Client " + random.nextInt(50);
+            String beneficiary = "Client " + random.nextInt(50);
+            if (mtn % 3 == 0) {
+                for (int issue = 0; issue < 2; issue++) {
+                    int id = ++issueId;
+                    rows.add(new Transaction(mtn, amount, sender, 30, beneficiary, 40, id, false, "Issue " + id));
+                    if (random.nextBoolean()) {
+                        rows.add(new Transaction(mtn, amount, sender, 30, beneficiary, 40, id, true, "Issue " + id));
+                    }
+                }
+            } else {
+                rows.add(new Transaction(mtn, amount, sender, 30, beneficiary, 40, null, true, null));
+            }
+        }
+        //shuffling so solved rows regularly race ahead of the row that opened the issue
+        Collections.shuffle(rows, random);
+        return rows;
+    }
+
+    private static List<Integer> mtnsOf(List<Transaction> transactions) {
+        return transactions.stream().map(Transaction::getMtn).collect(Collectors.toList());
+    }
+
+    private static List<String> sorted(List<String> values) {
+        List<String> copy = new ArrayList<>(values);
+        Collections.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,127 @@
+package com.smallworld;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The set of metrics a caller wants in one TransactionReport. Register them and hand the plan to
+ * TransactionQueries.run, which computes them together instead of one full query per metric.
+ */
+public class QueryPlan {
+
+    static final int NO_TOP_TRANSACTIONS = -1;
+
+    private boolean totalAmount;
+    private boolean maxAmount;
+    private boolean uniqueClients;
+    private boolean topSender;
+    private int topTransactions = NO_TOP_TRANSACTIONS;
+    private boolean solvedIssueMessages;
+    private boolean unsolvedIssueIds;
+    private boolean transactionsByBeneficiaryName;
+    private final Set<String> totalAmountSentBy = new LinkedHashSet<>();
+    private final Set<String> openComplianceIssues = new LinkedHashSet<>();
+
+    public QueryPlan totalAmount() {
+        totalAmount = true;
+        return this;
+    }
+
+    public QueryPlan maxAmount() {
+        maxAmount = true;
+        return this;
+    }
+
+    public QueryPlan uniqueClients() {
+        uniqueClients = true;
+        return this;
+    }
+
+    public QueryPlan topSender() {
+        topSender = true;
+        return this;
+    }
+
+    /**
+     * Requests the k transactions with the highest amount
+     */
+    public QueryPlan topTransactions(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative but was " + k);
+        }
+        topTransactions = k;
+        return this;
+    }
+
+    public QueryPlan solvedIssueMessages() {
+        solvedIssueMessages = true;
+        return this;
+    }
+
+    public QueryPlan unsolvedIssueIds() {
+        unsolvedIssueIds = true;
+        return this;
+    }
+
+    public QueryPlan transactionsByBeneficiaryName() {
+        transactionsByBeneficiaryName = true;
+        return this;
+    }
+
+    /**
+     * Requests the total amount sent by the client, can be called for as many clients as needed
+     */
+    public QueryPlan totalAmountSentBy(String senderFullName) {
+        totalAmountSentBy.add(senderFullName);
+        return this;
+    }
+
+    /**
+     * Requests whether the client has open compliance issues, can be called for as many clients as needed
+     */
+    public QueryPlan openComplianceIssues(String clientFullName) {
+        openComplianceIssues.add(clientFullName);
+        return this;
+    }
+
+    boolean hasTotalAmount() {
+        return totalAmount;
+    }
+
+    boolean hasMaxAmount() {
+        return maxAmount;
+    }
+
+    boolean hasUniqueClients() {
+        return uniqueClients;
+    }
+
+    boolean hasTopSender() {
+        return topSender;
+    }
+
+    int getTopTransactions() {
+        return topTransactions;
+    }
+
+    boolean hasSolvedIssueMessages() {
+        return solvedIssueMessages;
+    }
+
+    boolean hasUnsolvedIssueIds() {
+        return unsolvedIssueIds;
+    }
+
+    boolean hasTransactionsByBeneficiaryName() {
+        return transactionsByBeneficiaryName;
+    }
+
+    Set<String> getTotalAmountSentBy() {
+        return Collections.unmodifiableSet(totalAmountSentBy);
+    }
+
+    Set<String> getOpenComplianceIssues() {
+        return Collections.unmodifiableSet(openComplianceIssues);
+    }
+}
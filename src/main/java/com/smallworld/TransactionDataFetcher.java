@@ -1,135 +1,641 @@
 package com.smallworld;
 
 import com.smallworld.data.Transaction;
+import com.smallworld.store.ClientIndex;
+import com.smallworld.store.IntIntMap;
+import com.smallworld.store.IssueIndex;
+import com.smallworld.store.ScanExecutor;
+import com.smallworld.store.StoreSnapshot;
+import com.smallworld.store.StringDictionary;
+import com.smallworld.store.TimeRollups;
+import com.smallworld.store.TopRows;
+import com.smallworld.store.TransactionStore;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
 
-public class TransactionDataFetcher {
+public class TransactionDataFetcher implements TransactionQueries {
 
-    private final List<Transaction> transactions;
+    //one row per mtn, in the order each transaction was first seen
+    private final TransactionStore store;
+    //aggregates kept current on every append so reads never rescan the store
+    private final ClientIndex clientIndex = new ClientIndex();
+    private final TopRows top3Rows = new TopRows(3);
+    private final IssueIndex issueIndex;
+    //sum of the amounts of every sealed block plus the sum of the block being filled, see BLOCK_SIZE
+    private double sealedTotal;
+    private double blockTotal;
+    private double maxAmount;
+    private int topSender = StringDictionary.NOT_FOUND;
+    //set when a negative amount lowers the current top sender, which forces a search on the next read
+    private boolean topSenderStale;
+    //hourly rollups of the rows that carry an event time, for the time range queries
+    private final TimeRollups rollups = new TimeRollups(TimeRollups.HOUR);
+    //runs the full scans: the initial build of the aggregates and the queries that return every row
+    private final ScanExecutor scanExecutor;
+    private long scannedRows;
+    //bumped on every row added and every issue added or solved
+    private long dataVersion;
 
-    public TransactionDataFetcher(List<Transaction> transactions) {
-        this.transactions = transactions;
+    public TransactionDataFetcher() {
+        this(ScanExecutor.sequential());
+    }
+
+    public TransactionDataFetcher(ScanExecutor scanExecutor) {
+        this(new TransactionStore(), scanExecutor);
+    }
+
+    private TransactionDataFetcher(TransactionStore store, ScanExecutor scanExecutor) {
+        this.store = store;
+        this.issueIndex = new IssueIndex(store);
+        this.scanExecutor = scanExecutor;
+    }
+
+    public TransactionDataFetcher(List<Transaction> rows) {
+        this(rows, ScanExecutor.sequential());
     }
 
     /**
-     * Returns the sum of the amounts of all transactions
+     * Loads the rows into the store first and then builds every aggregate with chunked scans, in parallel when
+     * the executor allows it. The result is identical to appending the rows one by one.
      */
-    public double getTotalTransactionAmount() {
-        double totalAmount = 0.0;
+    public TransactionDataFetcher(List<Transaction> rows, ScanExecutor scanExecutor) {
+        this(scanExecutor);
+        for (Transaction row : rows) {
+            int issueCount = store.issueCount();
+            store.add(row);
+            if (store.issueCount() == issueCount && row.getIssueId() != null && row.isIssueSolved()) {
+                store.solveIssue(store.findIssue(row.getIssueId()));
+            }
+        }
+        buildAggregates();
+    }
+
+    /**
+     * Restores a fetcher from a snapshot written by dump, rebuilding the aggregates from the restored columns
+     */
+    public static TransactionDataFetcher restore(Path snapshot) throws IOException {
+        return restore(snapshot, ScanExecutor.sequential());
+    }
+
+    public static TransactionDataFetcher restore(Path snapshot, ScanExecutor scanExecutor) throws IOException {
+        TransactionDataFetcher fetcher = new TransactionDataFetcher(StoreSnapshot.read(snapshot), scanExecutor);
+        fetcher.buildAggregates();
+        return fetcher;
+    }
+
+    /**
+     * Writes every loaded transaction and issue to a binary snapshot that restore can load without parsing JSON
+     */
+    public void dump(Path snapshot) throws IOException {
+        StoreSnapshot.write(store, snapshot);
+    }
+
+    /**
+     * Adds a row of the transaction/issue join. Rows of a transaction that is already known only contribute
+     * their issue, and a row reporting an already known issue as solved marks that issue solved.
+     */
+    public void append(Transaction transaction) {
+        int rowCount = store.size();
+        int issueCount = store.issueCount();
+        int row = store.add(transaction);
+        if (row == rowCount) {
+            onRowAdded(row);
+        }
+        if (store.issueCount() > issueCount) {
+            onIssueAdded(issueCount);
+        } else if (transaction.getIssueId() != null && transaction.isIssueSolved()) {
+            markIssueSolved(transaction.getIssueId());
+        }
+    }
+
+    /**
+     * Adds every row of the batch in order
+     */
+    public void appendBatch(Collection<Transaction> transactions) {
         for (Transaction transaction : transactions) {
-            totalAmount += transaction.getAmount();
+            append(transaction);
+        }
+    }
+
+    /**
+     * Marks an open issue as solved. Returns false when the issue is unknown or already solved.
+     */
+    public boolean markIssueSolved(int issueId) {
+        int issue = store.findIssue(issueId);
+        if (issue == TransactionStore.NO_ISSUE || !store.solveIssue(issue)) {
+            return false;
+        }
+        dataVersion++;
+        issueIndex.solveIssue(issue);
+        int row = store.getIssueRow(issue);
+        clientIndex.removeOpenIssue(store, row);
+        if (store.getEventTime(row) != TransactionStore.NO_TIME) {
+            rollups.removeOpenIssue(store.getEventTime(row));
+        }
+        return true;
+    }
+
+    private void onRowAdded(int row) {
+        dataVersion++;
+        double amount = store.getAmount(row);
+        if (row > 0 && row % TransactionStore.BLOCK_SIZE == 0) {
+            sealedTotal += blockTotal;
+            blockTotal = 0.0;
+        }
+        blockTotal += amount;
+        maxAmount = row == 0 ? amount : Math.max(maxAmount, amount);
+        top3Rows.offer(row, amount);
+        clientIndex.addRow(store, row);
+        if (store.getEventTime(row) != TransactionStore.NO_TIME) {
+            rollups.addRow(store.getEventTime(row), store.getSenderId(row), amount);
+        }
+
+        int senderId = store.getSenderId(row);
+        if (senderId == topSender) {
+            topSenderStale |= amount < 0;
+        } else if (topSender == StringDictionary.NOT_FOUND || ranksAbove(senderId, topSender)) {
+            topSender = senderId;
+        }
+    }
+
+    private void onIssueAdded(int issue) {
+        dataVersion++;
+        issueIndex.addIssue(issue);
+        if (!store.isIssueSolved(issue)) {
+            addOpenIssue(issue);
+        }
+    }
+
+    private void addOpenIssue(int issue) {
+        int row = store.getIssueRow(issue);
+        clientIndex.addOpenIssue(store, row);
+        if (store.getEventTime(row) != TransactionStore.NO_TIME) {
+            rollups.addOpenIssue(store.getEventTime(row));
+        }
+    }
+
+    /**
+     * Computes the aggregates of a freshly loaded store. Chunks of rows and issues are scanned by the executor
+     * and their partial results folded in chunk order, leaving the same state a row by row append would.
+     */
+    private void buildAggregates() {
+        List<RowChunk> rowChunks = scan(RowChunk::new);
+        clientIndex.ensureCapacity(store.getClients().size());
+        for (int block = 0; block < rowChunks.size(); block++) {
+            RowChunk chunk = rowChunks.get(block);
+            sealedTotal += blockTotal;
+            blockTotal = chunk.total;
+            maxAmount = block == 0 ? chunk.max : Math.max(maxAmount, chunk.max);
+            top3Rows.offerAll(chunk.top3Rows);
+            clientIndex.mergeSentBlock(block, chunk.senderIds, chunk.sentTotals, chunk.senderCount);
+        }
+        for (int row = 0; row < store.size(); row++) {
+            clientIndex.addPostings(store, row);
+            if (store.getEventTime(row) != TransactionStore.NO_TIME) {
+                rollups.addRow(store.getEventTime(row), store.getSenderId(row), store.getAmount(row));
+            }
+        }
+        for (int issue = 0; issue < store.issueCount(); issue++) {
+            issueIndex.addIssue(issue);
         }
-        return totalAmount;
+        for (int[] openIssues : scanExecutor.mapChunks(store.issueCount(), this::findOpenIssues)) {
+            for (int issue : openIssues) {
+                addOpenIssue(issue);
+            }
+        }
+        topSender = findTopSender();
+        //counted as if every row and issue had been appended, so a loaded fetcher never reports version 0
+        dataVersion = store.size() + store.issueCount();
+    }
+
+    private int[] findOpenIssues(int from, int to) {
+        int[] openIssues = new int[to - from];
+        int count = 0;
+        for (int issue = from; issue < to; issue++) {
+            if (!store.isIssueSolved(issue)) {
+                openIssues[count++] = issue;
+            }
+        }
+        return Arrays.copyOf(openIssues, count);
+    }
+
+    /**
+     * Returns the sum of the amounts of all transactions
+     */
+    @Override
+    public double getTotalTransactionAmount() {
+        return sealedTotal + blockTotal;
     }
 
     /**
      * Returns the sum of the amounts of all transactions sent by the specified client
      */
+    @Override
     public double getTotalTransactionAmountSentBy(String senderFullName) {
-        double totalAmount = 0.0;
-        for (Transaction transaction : transactions) {
-            if (transaction.getSenderFullName().equals(senderFullName)) {
-                totalAmount += transaction.getAmount();
-            }
+        int senderId = store.getClients().find(senderFullName);
+        if (senderId == StringDictionary.NOT_FOUND) {
+            return 0.0;
         }
-        return totalAmount;
+        return clientIndex.getSentTotal(senderId);
     }
 
     /**
      * Returns the highest transaction amount
      */
+    @Override
     public double getMaxTransactionAmount() {
-        return transactions.stream().mapToDouble(Transaction::getAmount).max().orElse(0.0);
+        return maxAmount;
     }
 
     /**
      * Counts the number of unique clients that sent or received a transaction
      */
+    @Override
     public long countUniqueClients() {
-        //initializing hashset for unique client names
-        Set<String> uniqueClientsCount = new HashSet<>();
-        for (Transaction transaction : transactions) {
-            uniqueClientsCount.add(transaction.getSenderFullName());
-            uniqueClientsCount.add(transaction.getBeneficiaryFullName());
-        }
-        return uniqueClientsCount.size();
+        //every sender and beneficiary name is encoded once in the client dictionary
+        return store.getClients().size();
     }
 
     /**
      * Returns whether a client (sender or beneficiary) has at least one transaction with a compliance
      * issue that has not been solved
      */
+    @Override
     public boolean hasOpenComplianceIssues(String clientFullName) {
-        for (Transaction transaction : transactions) {
-            if (clientFullName.equals(transaction.getSenderFullName())
-                    || clientFullName.equals(transaction.getBeneficiaryFullName())) {
-                if (transaction.getIssueId() != null && !transaction.isIssueSolved()) {
-                    return true;
-                }
+        int clientId = store.getClients().find(clientFullName);
+        if (clientId == StringDictionary.NOT_FOUND) {
+            return false;
+        }
+        return clientIndex.getOpenIssueCount(clientId) > 0;
+    }
+
+    /**
+     * Returns the sum of the amounts of the transactions with an event time in [from, to), see TimeRollups for
+     * how ranges map to buckets
+     */
+    public double getTotalTransactionAmount(long from, long to) {
+        return rollups.getTotal(from, to);
+    }
+
+    /**
+     * Returns the sum of the amounts sent by the client in the time range
+     */
+    public double getTotalTransactionAmountSentBy(String senderFullName, long from, long to) {
+        int senderId = store.getClients().find(senderFullName);
+        if (senderId == StringDictionary.NOT_FOUND) {
+            return 0.0;
+        }
+        return rollups.getSentTotal(senderId, from, to);
+    }
+
+    /**
+     * Returns the highest transaction amount in the time range, or 0 when it has no transactions
+     */
+    public double getMaxTransactionAmount(long from, long to) {
+        return rollups.getMax(from, to);
+    }
+
+    /**
+     * Counts the open issues of the transactions in the time range
+     */
+    public long countOpenIssues(long from, long to) {
+        return rollups.getOpenIssueCount(from, to);
+    }
+
+    /**
+     * Drops the rollups of time buckets ending at or before the given time, the rows themselves stay queryable
+     */
+    public void evictRollupsBefore(long time) {
+        rollups.evictBefore(time);
+    }
+
+    /**
+     * Merges the hourly rollups before the given time into windows of the given width, e.g. TimeRollups.DAY
+     */
+    public void compactRollupsBefore(long time, long windowMillis) {
+        rollups.compactBefore(time, windowMillis);
+    }
+
+    /**
+     * Returns the number of distinct transactions loaded
+     */
+    public int getTransactionCount() {
+        return store.size();
+    }
+
+    /**
+     * Returns the names of every client that sent or received a transaction, in the order they were first seen
+     */
+    public List<String> getClientNames() {
+        StringDictionary clients = store.getClients();
+        List<String> names = new ArrayList<>(clients.size());
+        for (int clientId = 0; clientId < clients.size(); clientId++) {
+            names.add(clients.decode(clientId));
+        }
+        return names;
+    }
+
+    /**
+     * Returns the total amount sent by every sender, keyed by senderFullName
+     */
+    public Map<String, Double> getSentTotalsBySender() {
+        Map<String, Double> sentTotals = new HashMap<>();
+        StringDictionary clients = store.getClients();
+        for (int clientId = 0; clientId < clients.size(); clientId++) {
+            if (clientIndex.isSender(clientId)) {
+                sentTotals.put(clients.decode(clientId), clientIndex.getSentTotal(clientId));
+            }
+        }
+        return sentTotals;
+    }
+
+    /**
+     * Returns the message of every solved issue keyed by issue id
+     */
+    public Map<Integer, String> getSolvedIssueMessagesById() {
+        Map<Integer, String> messages = new HashMap<>();
+        for (int issue = 0; issue < store.issueCount(); issue++) {
+            if (store.isIssueSolved(issue)) {
+                messages.put(store.getIssueId(issue), store.getIssueMessage(issue));
             }
         }
-        return false;
+        return messages;
+    }
+
+    /**
+     * Returns the transactions a client sent or received, in the order they were first seen
+     */
+    public List<Transaction> getTransactionsByClient(String clientFullName) {
+        int clientId = store.getClients().find(clientFullName);
+        if (clientId == StringDictionary.NOT_FOUND) {
+            return Collections.emptyList();
+        }
+        List<Transaction> transactions = new ArrayList<>();
+        for (int row : clientIndex.getClientRows(clientId)) {
+            transactions.add(store.toTransaction(row));
+        }
+        return transactions;
     }
 
     /**
      * Returns all transactions indexed by beneficiary name
      */
+    @Override
     public Map<String, Transaction> getTransactionsByBeneficiaryName() {
         Map<String, Transaction> transactionsByBeneficiaryName = new HashMap<>();
-        for (Transaction transaction : transactions) {
-            String beneficiaryName = transaction.getBeneficiaryFullName();
-            transactionsByBeneficiaryName.put(beneficiaryName, transaction);
+        //merging the chunks in order so the last transaction of every beneficiary wins, as in a single pass
+        for (Map<String, Transaction> chunk : scan(this::indexByBeneficiaryName)) {
+            transactionsByBeneficiaryName.putAll(chunk);
+        }
+        return transactionsByBeneficiaryName;
+    }
+
+    private Map<String, Transaction> indexByBeneficiaryName(int from, int to) {
+        Map<String, Transaction> transactionsByBeneficiaryName = new HashMap<>();
+        for (int row = from; row < to; row++) {
+            String beneficiaryName = store.getClients().decode(store.getBeneficiaryId(row));
+            transactionsByBeneficiaryName.put(beneficiaryName, store.toTransaction(row));
         }
         return transactionsByBeneficiaryName;
     }
 
     /**
-     * Returns the identifiers of all open compliance issues
+     * Returns the identifiers of all open compliance issues in issue order, as a new set the caller owns
      */
+    @Override
     public Set<Integer> getUnsolvedIssueIds() {
-        //using hashset for unique UnsolvedIssueIds
-        Set<Integer> unsolvedIssueIds = new HashSet<>();
-        for (Transaction transaction : transactions) {
-            if (transaction.getIssueId() != null && !transaction.isIssueSolved()) {
-                unsolvedIssueIds.add(transaction.getIssueId());
-            }
-        }
-        return unsolvedIssueIds;
+        return new LinkedHashSet<>(issueIndex.getUnsolvedIssueIds());
     }
 
     /**
-     * Returns a list of all solved issue messages
+     * Returns a list of all solved issue messages, one per solved issue, as a read-only snapshot
      */
+    @Override
     public List<String> getAllSolvedIssueMessages() {
-        List<String> solvedIssueMessages = new ArrayList<>();
-        for (Transaction transaction : transactions) {
-            if (transaction.isIssueSolved()) {
-                solvedIssueMessages.add(transaction.getIssueMessage());
-            }
-        }
-        return solvedIssueMessages;
+        return issueIndex.getSolvedIssueMessages();
+    }
+
+    @Override
+    public long getScannedRows() {
+        return scannedRows;
+    }
+
+    @Override
+    public long getDataVersion() {
+        return dataVersion;
     }
 
     /**
      * Returns the 3 transactions with the highest amount sorted by amount descending
      */
+    @Override
     public List<Transaction> getTop3TransactionsByAmount() {
-        return transactions.stream().sorted(Comparator.comparingDouble(Transaction::getAmount).reversed())
-                .limit(3).collect(Collectors.toList());
+        return toTransactions(top3Rows.toSortedRows(), 3);
+    }
+
+    /**
+     * Returns the k transactions with the highest amount sorted by amount descending. Transactions with equal
+     * amounts keep the order they were first seen in. Every scanning thread keeps one bounded heap over its runs
+     * of rows and the heaps are merged, so this runs in O(n log k) time and O(k * parallelism) memory.
+     */
+    @Override
+    public List<Transaction> getTopTransactionsByAmount(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative but was " + k);
+        }
+        if (k <= 3) {
+            return toTransactions(top3Rows.toSortedRows(), k);
+        }
+        int capacity = Math.min(k, store.size());
+        TopRows topRows = reduce(() -> new TopRows(capacity), this::addTopRows, TransactionDataFetcher::mergeTopRows);
+        return toTransactions(topRows.toSortedRows(), k);
+    }
+
+    private void addTopRows(TopRows topRows, int from, int to) {
+        for (int row = from; row < to; row++) {
+            topRows.offer(row, store.getAmount(row));
+        }
+    }
+
+    private static TopRows mergeTopRows(TopRows topRows, TopRows other) {
+        topRows.offerAll(other);
+        return topRows;
+    }
+
+    private List<Transaction> toTransactions(int[] rows, int limit) {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < rows.length && i < limit; i++) {
+            transactions.add(store.toTransaction(rows[i]));
+        }
+        return transactions;
     }
 
     /**
      * Returns the senderFullName of the sender with the most total sent amount
      */
+    @Override
     public Optional<String> getTopSender() {
-        Map<String, Double> topSenderAmount = transactions.stream().collect(
-                Collectors.groupingBy(Transaction::getSenderFullName,
-                        Collectors.summingDouble(Transaction::getAmount)));
+        if (topSenderStale) {
+            topSender = findTopSender();
+            topSenderStale = false;
+        }
+        return topSender == StringDictionary.NOT_FOUND
+                ? Optional.empty() : Optional.ofNullable(store.getClients().decode(topSender));
+    }
+
+    /**
+     * Computes every metric of the plan. Metrics backed by running aggregates are read directly, and the ones
+     * that need every row or issue (top k beyond 3, solved messages, transactions by beneficiary) share a single
+     * chunked scan in which each chunk is visited once for all of them.
+     */
+    @Override
+    public TransactionReport run(QueryPlan plan) {
+        TransactionReport report = new TransactionReport();
+        if (plan.hasTotalAmount()) {
+            report.setTotalAmount(getTotalTransactionAmount());
+        }
+        if (plan.hasMaxAmount()) {
+            report.setMaxAmount(getMaxTransactionAmount());
+        }
+        if (plan.hasUniqueClients()) {
+            report.setUniqueClients(countUniqueClients());
+        }
+        if (plan.hasTopSender()) {
+            report.setTopSender(getTopSender());
+        }
+        if (plan.hasUnsolvedIssueIds()) {
+            report.setUnsolvedIssueIds(getUnsolvedIssueIds());
+        }
+        for (String senderFullName : plan.getTotalAmountSentBy()) {
+            report.putTotalAmountSentBy(senderFullName, getTotalTransactionAmountSentBy(senderFullName));
+        }
+        for (String clientFullName : plan.getOpenComplianceIssues()) {
+            report.putOpenComplianceIssues(clientFullName, hasOpenComplianceIssues(clientFullName));
+        }
+
+        int k = plan.getTopTransactions();
+        boolean scanTopRows = k > 3;
+        if (k != QueryPlan.NO_TOP_TRANSACTIONS && !scanTopRows) {
+            report.setTopTransactions(getTopTransactionsByAmount(k));
+        }
+        if (plan.hasSolvedIssueMessages()) {
+            report.setSolvedIssueMessages(getAllSolvedIssueMessages());
+        }
+        if (!scanTopRows && !plan.hasTransactionsByBeneficiaryName()) {
+            return report;
+        }
+        int topCapacity = scanTopRows ? Math.min(k, store.size()) : 0;
+        ReportScan scan = reduce(() -> new ReportScan(plan, topCapacity), ReportScan::add, ReportScan::merge);
+        if (scanTopRows) {
+            report.setTopTransactions(toTransactions(scan.topRows.toSortedRows(), k));
+        }
+        if (plan.hasTransactionsByBeneficiaryName()) {
+            report.setTransactionsByBeneficiaryName(scan.transactionsByBeneficiaryName);
+        }
+        return report;
+    }
+
+    private int findTopSender() {
+        int top = StringDictionary.NOT_FOUND;
+        for (int clientId = 0; clientId < clientIndex.clientCount(); clientId++) {
+            if (clientIndex.isSender(clientId) && (top == StringDictionary.NOT_FOUND || ranksAbove(clientId, top))) {
+                top = clientId;
+            }
+        }
+        return top;
+    }
+
+    //higher sent total wins, on equal totals the client seen first wins
+    private boolean ranksAbove(int senderId, int otherSenderId) {
+        int byTotal = Double.compare(clientIndex.getSentTotal(senderId), clientIndex.getSentTotal(otherSenderId));
+        return byTotal > 0 || (byTotal == 0 && senderId < otherSenderId);
+    }
+
+    /**
+     * Maps chunks of every row through the executor, counting the rows read
+     */
+    private <P> List<P> scan(ScanExecutor.ChunkFunction<P> function) {
+        scannedRows += store.size();
+        return scanExecutor.mapChunks(store.size(), function);
+    }
 
-        return topSenderAmount.entrySet().stream().max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey);
+    /**
+     * Reduces chunks of every row through the executor, counting the rows read
+     */
+    private <A> A reduce(Supplier<A> supplier, ScanExecutor.ChunkAccumulator<A> accumulator,
+                         BinaryOperator<A> combiner) {
+        scannedRows += store.size();
+        return scanExecutor.reduceChunks(store.size(), supplier, accumulator, combiner);
+    }
+
+    /**
+     * Partial aggregates of one block of rows
+     */
+    private final class RowChunk {
+
+        private double total;
+        private final double max;
+        private final TopRows top3Rows = new TopRows(3);
+        private final int[] senderIds;
+        private final double[] sentTotals;
+        private int senderCount;
+
+        private RowChunk(int from, int to) {
+            senderIds = new int[to - from];
+            sentTotals = new double[to - from];
+            IntIntMap senderSlots = new IntIntMap();
+            double chunkMax = store.getAmount(from);
+            for (int row = from; row < to; row++) {
+                double amount = store.getAmount(row);
+                total += amount;
+                chunkMax = Math.max(chunkMax, amount);
+                top3Rows.offer(row, amount);
+                int senderId = store.getSenderId(row);
+                int slot = senderSlots.get(senderId);
+                if (slot < 0) {
+                    slot = senderCount++;
+                    senderSlots.put(senderId, slot);
+                    senderIds[slot] = senderId;
+                }
+                sentTotals[slot] += amount;
+            }
+            max = chunkMax;
+        }
     }
 
+    /**
+     * Partial results of the scan-based metrics of a query plan over runs of rows
+     */
+    private final class ReportScan {
+
+        private final TopRows topRows;
+        private final Map<String, Transaction> transactionsByBeneficiaryName;
+
+        private ReportScan(QueryPlan plan, int topCapacity) {
+            topRows = new TopRows(topCapacity);
+            transactionsByBeneficiaryName = plan.hasTransactionsByBeneficiaryName() ? new HashMap<>() : null;
+        }
+
+        private void add(int from, int to) {
+            if (topRows.capacity() > 0) {
+                addTopRows(topRows, from, to);
+            }
+            if (transactionsByBeneficiaryName != null) {
+                transactionsByBeneficiaryName.putAll(indexByBeneficiaryName(from, to));
+            }
+        }
+
+        //the other chunk holds later rows, so its beneficiaries overwrite these as in a single pass
+        private ReportScan merge(ReportScan other) {
+            topRows.offerAll(other.topRows);
+            if (transactionsByBeneficiaryName != null) {
+                transactionsByBeneficiaryName.putAll(other.transactionsByBeneficiaryName);
+            }
+            return this;
+        }
+    }
 }
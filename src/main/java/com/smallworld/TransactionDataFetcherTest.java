@@ -1,10 +1,17 @@
 package com.smallworld;
 
 import com.smallworld.data.Transaction;
+import com.smallworld.store.ScanExecutor;
+import com.smallworld.store.TimeRollups;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
@@ -15,8 +22,11 @@ public class TransactionDataFetcherTest {
     @Test
     public void test_GetTotalTransactionAmount_ShouldReturnSum() {
         Transaction transaction1 = Mockito.mock(Transaction.class);
+        when(transaction1.getMtn()).thenReturn(1);
         Transaction transaction2 = Mockito.mock(Transaction.class);
+        when(transaction2.getMtn()).thenReturn(2);
         Transaction transaction3 = Mockito.mock(Transaction.class);
+        when(transaction3.getMtn()).thenReturn(3);
 
         when(transaction1.getAmount()).thenReturn(500.0);
         when(transaction2.getAmount()).thenReturn(300.0);
@@ -34,14 +44,17 @@ public class TransactionDataFetcherTest {
     @Test
     public void test_GetTotalTransactionAmountSentBy_ShouldReturnTotalAmount() {
         Transaction transaction1 = mock(Transaction.class);
+        when(transaction1.getMtn()).thenReturn(1);
         when(transaction1.getSenderFullName()).thenReturn("John Doe");
         when(transaction1.getAmount()).thenReturn(100.0);
 
         Transaction transaction2 = mock(Transaction.class);
+        when(transaction2.getMtn()).thenReturn(2);
         when(transaction2.getSenderFullName()).thenReturn("Jane Smith");
         when(transaction2.getAmount()).thenReturn(200.0);
 
         Transaction transaction3 = mock(Transaction.class);
+        when(transaction3.getMtn()).thenReturn(3);
         when(transaction3.getSenderFullName()).thenReturn("John Doe");
         when(transaction3.getAmount()).thenReturn(300.0);
 
@@ -57,8 +70,11 @@ public class TransactionDataFetcherTest {
     @Test
     public void test_GetMaxTransactionAmount_ShouldReturnHighestTransaction() {
         Transaction transaction1 = Mockito.mock(Transaction.class);
+        when(transaction1.getMtn()).thenReturn(1);
         Transaction transaction2 = Mockito.mock(Transaction.class);
+        when(transaction2.getMtn()).thenReturn(2);
         Transaction transaction3 = Mockito.mock(Transaction.class);
+        when(transaction3.getMtn()).thenReturn(3);
         when(transaction1.getAmount()).thenReturn(100.0);
         when(transaction2.getAmount()).thenReturn(200.0);
         when(transaction3.getAmount()).thenReturn(300.0);
@@ -72,8 +88,11 @@ public class TransactionDataFetcherTest {
     @Test
     public void test_CountUniqueClients_ShouldReturnCount() {
         Transaction transaction1 = Mockito.mock(Transaction.class);
+        when(transaction1.getMtn()).thenReturn(1);
         Transaction transaction2 = Mockito.mock(Transaction.class);
+        when(transaction2.getMtn()).thenReturn(2);
         Transaction transaction3 = Mockito.mock(Transaction.class);
+        when(transaction3.getMtn()).thenReturn(3);
 
         when(transaction1.getSenderFullName()).thenReturn("John Doe");
         when(transaction1.getBeneficiaryFullName()).thenReturn("Jane Smith");
@@ -92,8 +111,11 @@ public class TransactionDataFetcherTest {
     public void test_HasOpenComplianceIssues_ClientWithOpenIssue() {
         //case-I
         Transaction transaction1 = Mockito.mock(Transaction.class);
+        when(transaction1.getMtn()).thenReturn(1);
         Transaction transaction2 = Mockito.mock(Transaction.class);
+        when(transaction2.getMtn()).thenReturn(2);
         Transaction transaction3 = Mockito.mock(Transaction.class);
+        when(transaction3.getMtn()).thenReturn(3);
 
         when(transaction1.getSenderFullName()).thenReturn("John Doe");
         when(transaction1.getBeneficiaryFullName()).thenReturn("Jane Smith");
@@ -118,7 +140,9 @@ public class TransactionDataFetcherTest {
     public void test_HasOpenComplianceIssues_ClientWithoutOpenIssue() {
         //CASE-II
         Transaction transaction1 = Mockito.mock(Transaction.class);
+        when(transaction1.getMtn()).thenReturn(1);
         Transaction transaction2 = Mockito.mock(Transaction.class);
+        when(transaction2.getMtn()).thenReturn(2);
 
         when(transaction1.getSenderFullName()).thenReturn("John Doe");
         when(transaction1.getBeneficiaryFullName()).thenReturn("Jane Smith");
@@ -138,8 +162,11 @@ public class TransactionDataFetcherTest {
     @Test
     public void test_GetTransactionsByBeneficiaryName_ShouldReturnIndexedBeneficiaryName() {
         Transaction transaction1 = Mockito.mock(Transaction.class);
+        when(transaction1.getMtn()).thenReturn(1);
         Transaction transaction2 = Mockito.mock(Transaction.class);
+        when(transaction2.getMtn()).thenReturn(2);
         Transaction transaction3 = Mockito.mock(Transaction.class);
+        when(transaction3.getMtn()).thenReturn(3);
 
         when(transaction1.getBeneficiaryFullName()).thenReturn("Jane Smith");
         when(transaction2.getBeneficiaryFullName()).thenReturn("Alex Johnson");
@@ -148,19 +175,25 @@ public class TransactionDataFetcherTest {
         List<Transaction> transactions = Arrays.asList(transaction1, transaction2, transaction3);
         TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactions);
         Map<String, Transaction> transactionsByBeneficiaryName = dataFetcher.getTransactionsByBeneficiaryName();
-        Map<String, Transaction> expectedTransactionsByBeneficiaryName = new HashMap<>();
-        expectedTransactionsByBeneficiaryName.put("Jane Smith", transaction1);
-        expectedTransactionsByBeneficiaryName.put("Alex Johnson", transaction2);
-        expectedTransactionsByBeneficiaryName.put("Tom Johnson", transaction3);
-
-        assertEquals(expectedTransactionsByBeneficiaryName, transactionsByBeneficiaryName);
+        Map<String, Integer> expectedMtnsByBeneficiaryName = new HashMap<>();
+        expectedMtnsByBeneficiaryName.put("Jane Smith", 1);
+        expectedMtnsByBeneficiaryName.put("Alex Johnson", 2);
+        expectedMtnsByBeneficiaryName.put("Tom Johnson", 3);
+
+        //the fetcher rebuilds transactions from its columns, so they are compared by mtn
+        Map<String, Integer> mtnsByBeneficiaryName = new HashMap<>();
+        transactionsByBeneficiaryName.forEach((name, transaction) -> mtnsByBeneficiaryName.put(name, transaction.getMtn()));
+        assertEquals(expectedMtnsByBeneficiaryName, mtnsByBeneficiaryName);
     }
 
     @Test
     public void test_GetUnsolvedIssueIds_ShouldReturnIds() {
         Transaction transaction1 = Mockito.mock(Transaction.class);
+        when(transaction1.getMtn()).thenReturn(1);
         Transaction transaction2 = Mockito.mock(Transaction.class);
+        when(transaction2.getMtn()).thenReturn(2);
         Transaction transaction3 = Mockito.mock(Transaction.class);
+        when(transaction3.getMtn()).thenReturn(3);
 
         when(transaction1.getIssueId()).thenReturn(1);
         when(transaction1.isIssueSolved()).thenReturn(false);
@@ -181,12 +214,18 @@ public class TransactionDataFetcherTest {
     @Test
     public void test_GetAllSolvedIssueMessages_ShouldReturnMessages() {
         Transaction transaction1 = Mockito.mock(Transaction.class);
+        when(transaction1.getMtn()).thenReturn(1);
         Transaction transaction2 = Mockito.mock(Transaction.class);
+        when(transaction2.getMtn()).thenReturn(2);
         Transaction transaction3 = Mockito.mock(Transaction.class);
+        when(transaction3.getMtn()).thenReturn(3);
 
+        when(transaction1.getIssueId()).thenReturn(1);
         when(transaction1.isIssueSolved()).thenReturn(true);
         when(transaction1.getIssueMessage()).thenReturn("Issue 1 solved");
+        when(transaction2.getIssueId()).thenReturn(2);
         when(transaction2.isIssueSolved()).thenReturn(false); // Issue not solved
+        when(transaction3.getIssueId()).thenReturn(3);
         when(transaction3.isIssueSolved()).thenReturn(true);
         when(transaction3.getIssueMessage()).thenReturn("Issue 3 solved");
 
@@ -201,8 +240,11 @@ public class TransactionDataFetcherTest {
     @Test
     public void testGetTop3TransactionsByAmount_ShouldReturnTopTransactions() {
         Transaction transaction1 = Mockito.mock(Transaction.class);
+        when(transaction1.getMtn()).thenReturn(1);
         Transaction transaction2 = Mockito.mock(Transaction.class);
+        when(transaction2.getMtn()).thenReturn(2);
         Transaction transaction3 = Mockito.mock(Transaction.class);
+        when(transaction3.getMtn()).thenReturn(3);
 
         when(transaction1.getAmount()).thenReturn(500.0);
         when(transaction2.getAmount()).thenReturn(300.0);
@@ -210,19 +252,23 @@ public class TransactionDataFetcherTest {
         List<Transaction> transactions = Arrays.asList(transaction1, transaction2, transaction3);
         TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactions);
         List<Transaction> top3Transactions = dataFetcher.getTop3TransactionsByAmount();
-        List<Transaction> expectedTop3Transactions = transactions.stream()
+        List<Integer> expectedTop3Mtns = transactions.stream()
                 .sorted(Comparator.comparingDouble(Transaction::getAmount).reversed())
                 .limit(3)
+                .map(Transaction::getMtn)
                 .collect(Collectors.toList());
 
-        assertEquals(expectedTop3Transactions, top3Transactions);
+        assertEquals(expectedTop3Mtns, mtnsOf(top3Transactions));
     }
 
     @Test
     public void test_GetTopSender_ShouldReturnNameOfTopSender() {
         Transaction transaction1 = Mockito.mock(Transaction.class);
+        when(transaction1.getMtn()).thenReturn(1);
         Transaction transaction2 = Mockito.mock(Transaction.class);
+        when(transaction2.getMtn()).thenReturn(2);
         Transaction transaction3 = Mockito.mock(Transaction.class);
+        when(transaction3.getMtn()).thenReturn(3);
 
         when(transaction1.getSenderFullName()).thenReturn("John");
         when(transaction2.getSenderFullName()).thenReturn("Jane");
@@ -237,5 +283,406 @@ public class TransactionDataFetcherTest {
         assertEquals(Optional.of("John"), topSender);
     }
 
+    @Test
+    public void test_RepeatedIssueRows_ShouldCountTransactionOnce() {
+        Transaction transaction1 = Mockito.mock(Transaction.class);
+        Transaction transaction2 = Mockito.mock(Transaction.class);
+        Transaction transaction3 = Mockito.mock(Transaction.class);
+
+        //transaction1 and transaction2 are two issue rows of the same transaction
+        when(transaction1.getMtn()).thenReturn(1);
+        when(transaction1.getAmount()).thenReturn(150.0);
+        when(transaction1.getSenderFullName()).thenReturn("Tom Shelby");
+        when(transaction1.getIssueId()).thenReturn(2);
+        when(transaction1.isIssueSolved()).thenReturn(true);
+        when(transaction1.getIssueMessage()).thenReturn("Never gonna give you up");
+        when(transaction2.getMtn()).thenReturn(1);
+        when(transaction2.getAmount()).thenReturn(150.0);
+        when(transaction2.getSenderFullName()).thenReturn("Tom Shelby");
+        when(transaction2.getIssueId()).thenReturn(3);
+        when(transaction2.isIssueSolved()).thenReturn(false);
+        when(transaction3.getMtn()).thenReturn(2);
+        when(transaction3.getAmount()).thenReturn(200.0);
+        when(transaction3.getSenderFullName()).thenReturn("Aunt Polly");
+        when(transaction3.getIssueId()).thenReturn(null);
+        when(transaction3.isIssueSolved()).thenReturn(true);
+
+        List<Transaction> transactions = Arrays.asList(transaction1, transaction2, transaction3);
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactions);
+        assertEquals(350.0, dataFetcher.getTotalTransactionAmount(), 0.001);
+        assertEquals(150.0, dataFetcher.getTotalTransactionAmountSentBy("Tom Shelby"), 0.001);
+        assertEquals(Optional.of("Aunt Polly"), dataFetcher.getTopSender());
+        assertEquals(Arrays.asList(2, 1), mtnsOf(dataFetcher.getTop3TransactionsByAmount()));
+        assertEquals(Collections.singleton(3), dataFetcher.getUnsolvedIssueIds());
+        assertEquals(Collections.singletonList("Never gonna give you up"), dataFetcher.getAllSolvedIssueMessages());
+    }
+
+    @Test
+    public void test_GetTransactionsByClient_ShouldReturnSentAndReceivedTransactions() {
+        Transaction transaction1 = Mockito.mock(Transaction.class);
+        Transaction transaction2 = Mockito.mock(Transaction.class);
+        Transaction transaction3 = Mockito.mock(Transaction.class);
+
+        when(transaction1.getMtn()).thenReturn(1);
+        when(transaction1.getSenderFullName()).thenReturn("John Doe");
+        when(transaction1.getBeneficiaryFullName()).thenReturn("Jane Smith");
+        when(transaction2.getMtn()).thenReturn(2);
+        when(transaction2.getSenderFullName()).thenReturn("Alex Johnson");
+        when(transaction2.getBeneficiaryFullName()).thenReturn("Tom Johnson");
+        when(transaction3.getMtn()).thenReturn(3);
+        when(transaction3.getSenderFullName()).thenReturn("Jane Smith");
+        when(transaction3.getBeneficiaryFullName()).thenReturn("John Doe");
+
+        List<Transaction> transactions = Arrays.asList(transaction1, transaction2, transaction3);
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactions);
+        assertEquals(Arrays.asList(1, 3), mtnsOf(dataFetcher.getTransactionsByClient("John Doe")));
+        assertEquals(Collections.singletonList(2), mtnsOf(dataFetcher.getTransactionsByClient("Tom Johnson")));
+        assertTrue(dataFetcher.getTransactionsByClient("Nobody").isEmpty());
+    }
+
+    @Test
+    public void test_Append_ShouldKeepAggregatesCurrent() {
+        Transaction transaction1 = Mockito.mock(Transaction.class);
+        Transaction transaction2 = Mockito.mock(Transaction.class);
+        Transaction transaction3 = Mockito.mock(Transaction.class);
+
+        when(transaction1.getMtn()).thenReturn(1);
+        when(transaction1.getAmount()).thenReturn(500.0);
+        when(transaction1.getSenderFullName()).thenReturn("John Doe");
+        when(transaction1.getBeneficiaryFullName()).thenReturn("Jane Smith");
+        when(transaction1.getIssueId()).thenReturn(7);
+        when(transaction1.isIssueSolved()).thenReturn(false);
+        when(transaction2.getMtn()).thenReturn(2);
+        when(transaction2.getAmount()).thenReturn(800.0);
+        when(transaction2.getSenderFullName()).thenReturn("Jane Smith");
+        when(transaction2.getBeneficiaryFullName()).thenReturn("Tom Johnson");
+        when(transaction2.getIssueId()).thenReturn(null);
+        when(transaction2.isIssueSolved()).thenReturn(true);
+        //a later row of transaction1 reporting its issue as solved
+        when(transaction3.getMtn()).thenReturn(1);
+        when(transaction3.getAmount()).thenReturn(500.0);
+        when(transaction3.getSenderFullName()).thenReturn("John Doe");
+        when(transaction3.getBeneficiaryFullName()).thenReturn("Jane Smith");
+        when(transaction3.getIssueId()).thenReturn(7);
+        when(transaction3.isIssueSolved()).thenReturn(true);
+
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher();
+        dataFetcher.append(transaction1);
+        assertEquals(500.0, dataFetcher.getTotalTransactionAmount(), 0.001);
+        assertEquals(Optional.of("John Doe"), dataFetcher.getTopSender());
+        assertTrue(dataFetcher.hasOpenComplianceIssues("Jane Smith"));
+        assertEquals(Collections.singleton(7), dataFetcher.getUnsolvedIssueIds());
+
+        dataFetcher.appendBatch(Arrays.asList(transaction2, transaction3));
+        assertEquals(1300.0, dataFetcher.getTotalTransactionAmount(), 0.001);
+        assertEquals(800.0, dataFetcher.getMaxTransactionAmount(), 0.001);
+        assertEquals(Optional.of("Jane Smith"), dataFetcher.getTopSender());
+        assertEquals(Arrays.asList(2, 1), mtnsOf(dataFetcher.getTop3TransactionsByAmount()));
+        assertEquals(3, dataFetcher.countUniqueClients());
+        assertFalse(dataFetcher.hasOpenComplianceIssues("Jane Smith"));
+        assertTrue(dataFetcher.getUnsolvedIssueIds().isEmpty());
+        assertFalse(dataFetcher.markIssueSolved(7));
+    }
+
+    @Test
+    public void test_ParallelScan_ShouldMatchSequentialAndAppendedResults() {
+        Random random = new Random(7);
+        List<Transaction> transactions = new ArrayList<>();
+        for (int mtn = 0; mtn < 50_000; mtn++) {
+            Integer issueId = mtn % 4 == 0 ? mtn : null;
+            transactions.add(new Transaction(mtn, random.nextInt(100_000) / 100.0, "Client " + random.nextInt(500), 30,
+                    "Client " + random.nextInt(500), 40, issueId, issueId == null || random.nextBoolean(),
+                    issueId == null ? null : "Issue " + mtn));
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        TransactionDataFetcher sequentialFetcher = new TransactionDataFetcher(transactions);
+        TransactionDataFetcher parallelFetcher = new TransactionDataFetcher(transactions, ScanExecutor.parallel(pool, 1000));
+        TransactionDataFetcher appendedFetcher = new TransactionDataFetcher();
+        appendedFetcher.appendBatch(transactions);
+
+        for (TransactionDataFetcher dataFetcher : Arrays.asList(parallelFetcher, appendedFetcher)) {
+            //sums must match to the last bit, not just within a tolerance
+            assertEquals(sequentialFetcher.getTotalTransactionAmount(), dataFetcher.getTotalTransactionAmount(), 0.0);
+            assertEquals(sequentialFetcher.getMaxTransactionAmount(), dataFetcher.getMaxTransactionAmount(), 0.0);
+            for (int client = 0; client < 500; client += 37) {
+                assertEquals(sequentialFetcher.getTotalTransactionAmountSentBy("Client " + client),
+                        dataFetcher.getTotalTransactionAmountSentBy("Client " + client), 0.0);
+                assertEquals(sequentialFetcher.hasOpenComplianceIssues("Client " + client),
+                        dataFetcher.hasOpenComplianceIssues("Client " + client));
+            }
+            assertEquals(sequentialFetcher.countUniqueClients(), dataFetcher.countUniqueClients());
+            assertEquals(sequentialFetcher.getTopSender(), dataFetcher.getTopSender());
+            assertEquals(mtnsOf(sequentialFetcher.getTop3TransactionsByAmount()),
+                    mtnsOf(dataFetcher.getTop3TransactionsByAmount()));
+            assertEquals(mtnsOf(sequentialFetcher.getTopTransactionsByAmount(1000)),
+                    mtnsOf(dataFetcher.getTopTransactionsByAmount(1000)));
+            assertEquals(sequentialFetcher.getUnsolvedIssueIds(), dataFetcher.getUnsolvedIssueIds());
+            assertEquals(sequentialFetcher.getAllSolvedIssueMessages(), dataFetcher.getAllSolvedIssueMessages());
+            Map<String, Transaction> expectedByBeneficiary = sequentialFetcher.getTransactionsByBeneficiaryName();
+            Map<String, Transaction> byBeneficiary = dataFetcher.getTransactionsByBeneficiaryName();
+            assertEquals(expectedByBeneficiary.keySet(), byBeneficiary.keySet());
+            for (String name : expectedByBeneficiary.keySet()) {
+                assertEquals(expectedByBeneficiary.get(name).getMtn(), byBeneficiary.get(name).getMtn());
+            }
+            TransactionReport report = dataFetcher.run(new QueryPlan().topTransactions(1000).transactionsByBeneficiaryName());
+            assertEquals(mtnsOf(sequentialFetcher.getTopTransactionsByAmount(1000)), mtnsOf(report.getTopTransactions()));
+            assertEquals(expectedByBeneficiary.keySet(), report.getTransactionsByBeneficiaryName().keySet());
+        }
+
+        //reducing keeps a few accumulators per thread rather than one per chunk
+        AtomicInteger accumulators = new AtomicInteger();
+        int[] counted = ScanExecutor.parallel(pool, 1000).reduceChunks(10_000_000,
+                () -> {
+                    accumulators.incrementAndGet();
+                    return new int[1];
+                },
+                (count, from, to) -> count[0] += to - from,
+                (left, right) -> {
+                    left[0] += right[0];
+                    return left;
+                });
+        assertEquals(10_000_000, counted[0]);
+        assertTrue(accumulators.get() + " accumulators", accumulators.get() <= 2 * 4 * pool.getParallelism());
+        pool.shutdown();
+    }
+
+    @Test
+    public void test_GetTopTransactionsByAmount_ShouldReturnKHighestWithTiesInInputOrder() {
+        List<Transaction> transactions = new ArrayList<>();
+        double[] amounts = {50.0, 900.0, 75.0, 900.0, 10.0, 300.0, 75.0, 20.0};
+        for (int mtn = 0; mtn < amounts.length; mtn++) {
+            transactions.add(new Transaction(mtn, amounts[mtn], "John Doe", 30, "Jane Smith", 40, null, true, null));
+        }
+        //a second issue row of mtn 5 must not make it count twice
+        transactions.add(new Transaction(5, 300.0, "John Doe", 30, "Jane Smith", 40, 1, false, "Issue 1"));
+
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactions);
+        assertEquals(Arrays.asList(1, 3, 5, 2, 6), mtnsOf(dataFetcher.getTopTransactionsByAmount(5)));
+        assertEquals(Arrays.asList(1, 3), mtnsOf(dataFetcher.getTopTransactionsByAmount(2)));
+        assertEquals(8, dataFetcher.getTopTransactionsByAmount(1000).size());
+        assertTrue(dataFetcher.getTopTransactionsByAmount(0).isEmpty());
+    }
+
+    @Test
+    public void test_Run_ShouldMatchIndividualQueries() {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int mtn = 0; mtn < 10_000; mtn++) {
+            Integer issueId = mtn % 3 == 0 ? mtn : null;
+            transactions.add(new Transaction(mtn, (mtn * 37 % 1000) / 10.0, "Client " + mtn % 40, 30,
+                    "Client " + mtn % 70, 40, issueId, issueId == null || mtn % 2 == 0,
+                    issueId == null ? null : "Issue " + mtn));
+        }
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactions);
+        TransactionReport report = dataFetcher.run(new QueryPlan()
+                .totalAmount()
+                .maxAmount()
+                .uniqueClients()
+                .topSender()
+                .topTransactions(20)
+                .solvedIssueMessages()
+                .unsolvedIssueIds()
+                .transactionsByBeneficiaryName()
+                .totalAmountSentBy("Client 3")
+                .openComplianceIssues("Client 5"));
+
+        assertEquals(dataFetcher.getTotalTransactionAmount(), report.getTotalAmount(), 0.0);
+        assertEquals(dataFetcher.getMaxTransactionAmount(), report.getMaxAmount(), 0.0);
+        assertEquals(dataFetcher.countUniqueClients(), report.getUniqueClients());
+        assertEquals(dataFetcher.getTopSender(), report.getTopSender());
+        assertEquals(mtnsOf(dataFetcher.getTopTransactionsByAmount(20)), mtnsOf(report.getTopTransactions()));
+        assertEquals(dataFetcher.getAllSolvedIssueMessages(), report.getSolvedIssueMessages());
+        assertEquals(dataFetcher.getUnsolvedIssueIds(), report.getUnsolvedIssueIds());
+        assertEquals(dataFetcher.getTransactionsByBeneficiaryName().keySet(),
+                report.getTransactionsByBeneficiaryName().keySet());
+        assertEquals(dataFetcher.getTotalTransactionAmountSentBy("Client 3"), report.getTotalAmountSentBy("Client 3"), 0.0);
+        assertEquals(dataFetcher.hasOpenComplianceIssues("Client 5"), report.hasOpenComplianceIssues("Client 5"));
+    }
+
+    @Test
+    public void test_IssueResults_ShouldBeSnapshotsThatLaterChangesDoNotTouch() {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(Arrays.asList(
+                new Transaction(1, 100.0, "John Doe", 30, "Jane Smith", 40, 1, false, "Issue 1"),
+                new Transaction(2, 200.0, "John Doe", 30, "Jane Smith", 40, 2, true, "Issue 2"),
+                new Transaction(3, 300.0, "John Doe", 30, "Jane Smith", 40, 3, false, "Issue 3")));
+        TransactionReport report = dataFetcher.run(new QueryPlan().solvedIssueMessages().unsolvedIssueIds());
+        Set<Integer> unsolvedIssueIds = dataFetcher.getUnsolvedIssueIds();
+        List<String> solvedMessages = dataFetcher.getAllSolvedIssueMessages();
+
+        //the caller owns the returned set
+        unsolvedIssueIds.remove(1);
+        assertEquals(new HashSet<>(Arrays.asList(1, 3)), dataFetcher.getUnsolvedIssueIds());
+
+        //solving an earlier issue and adding a later one goes into the index but not into earlier results
+        dataFetcher.markIssueSolved(1);
+        dataFetcher.append(new Transaction(4, 400.0, "John Doe", 30, "Jane Smith", 40, 4, true, "Issue 4"));
+        assertEquals(Arrays.asList("Issue 1", "Issue 2", "Issue 4"), dataFetcher.getAllSolvedIssueMessages());
+        assertEquals(Collections.singletonList("Issue 2"), solvedMessages);
+        assertEquals(Collections.singletonList("Issue 2"), report.getSolvedIssueMessages());
+        assertEquals(new HashSet<>(Arrays.asList(1, 3)), report.getUnsolvedIssueIds());
+        assertEquals(Collections.singleton(3), dataFetcher.getUnsolvedIssueIds());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void test_Run_ShouldRejectMetricsOutsideThePlan() {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(Collections.emptyList());
+        dataFetcher.run(new QueryPlan().totalAmount()).getMaxAmount();
+    }
+
+    @Test
+    public void test_Restore_ShouldAnswerLikeTheDumpedFetcher() throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int mtn = 0; mtn < 10_000; mtn++) {
+            //every fifth transaction has two issues, one of them reported solved again by a later row
+            transactions.add(new Transaction(mtn, (mtn * 37 % 1000) / 10.0, "Client " + mtn % 40, 30,
+                    "Client \u00e9" + mtn % 70, 40, mtn % 5 == 0 ? 2 * mtn : null, mtn % 5 != 0,
+                    mtn % 5 == 0 ? "Issue " + mtn % 7 : null));
+            if (mtn % 5 == 0) {
+                transactions.add(new Transaction(mtn, (mtn * 37 % 1000) / 10.0, "Client " + mtn % 40, 30,
+                        "Client \u00e9" + mtn % 70, 40, 2 * mtn + 1, mtn % 2 == 0, null));
+            }
+        }
+        transactions.add(new Transaction(10, 5.0, "Client 10", 30, "Client \u00e910", 40, 20, true, "Issue 3"));
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactions);
+        Path snapshot = Files.createTempFile("transactions", ".snapshot");
+        try {
+            dataFetcher.dump(snapshot);
+            TransactionDataFetcher restoredFetcher = TransactionDataFetcher.restore(snapshot);
+
+            //appending after the restore must extend the restored columns and issue chains
+            Transaction newRow = new Transaction(20_000, 999.0, "Client 41", 30, "Client 3", 40, 0, false, "Late");
+            dataFetcher.append(newRow);
+            restoredFetcher.append(newRow);
+            assertTrue(restoredFetcher.markIssueSolved(11));
+            assertTrue(dataFetcher.markIssueSolved(11));
+
+            assertEquals(dataFetcher.getTotalTransactionAmount(), restoredFetcher.getTotalTransactionAmount(), 0.0);
+            assertEquals(dataFetcher.getMaxTransactionAmount(), restoredFetcher.getMaxTransactionAmount(), 0.0);
+            assertEquals(dataFetcher.countUniqueClients(), restoredFetcher.countUniqueClients());
+            assertEquals(dataFetcher.getTopSender(), restoredFetcher.getTopSender());
+            assertEquals(mtnsOf(dataFetcher.getTopTransactionsByAmount(50)),
+                    mtnsOf(restoredFetcher.getTopTransactionsByAmount(50)));
+            assertEquals(dataFetcher.getUnsolvedIssueIds(), restoredFetcher.getUnsolvedIssueIds());
+            assertEquals(dataFetcher.getAllSolvedIssueMessages(), restoredFetcher.getAllSolvedIssueMessages());
+            assertEquals(dataFetcher.getTransactionsByBeneficiaryName().keySet(),
+                    restoredFetcher.getTransactionsByBeneficiaryName().keySet());
+            for (int client = 0; client < 42; client++) {
+                String name = "Client " + client;
+                assertEquals(dataFetcher.getTotalTransactionAmountSentBy(name),
+                        restoredFetcher.getTotalTransactionAmountSentBy(name), 0.0);
+                assertEquals(dataFetcher.hasOpenComplianceIssues(name), restoredFetcher.hasOpenComplianceIssues(name));
+            }
+            assertEquals(mtnsOf(dataFetcher.getTransactionsByClient("Client 3")),
+                    mtnsOf(restoredFetcher.getTransactionsByClient("Client 3")));
+        } finally {
+            Files.delete(snapshot);
+        }
+    }
+
+    @Test
+    public void test_Restore_ShouldRejectCorruptedSnapshot() throws IOException {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(Collections.singletonList(
+                new Transaction(1, 10.0, "Tom Shelby", 22, "Aunt Polly", 34, 1, false, "Looks like money laundering")));
+        Path snapshot = Files.createTempFile("transactions", ".snapshot");
+        try {
+            dataFetcher.dump(snapshot);
+            byte[] bytes = Files.readAllBytes(snapshot);
+            bytes[bytes.length - 1] ^= 1;
+            Files.write(snapshot, bytes);
+
+            TransactionDataFetcher.restore(snapshot);
+            fail("A corrupted snapshot should not be restored");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Checksum mismatch"));
+        } finally {
+            Files.delete(snapshot);
+        }
+    }
+
+    @Test
+    public void test_TimeRangeQueries_ShouldCombineRollupsThroughCompactionAndEviction() {
+        long start = 1_700_006_400_000L;
+        List<Transaction> transactions = new ArrayList<>();
+        for (int mtn = 0; mtn < 24 * 10; mtn++) {
+            //one transaction every hour for ten days, every fourth one with an open issue
+            transactions.add(new Transaction(mtn, mtn % 50 + 1.0, "Client " + mtn % 3, 30, "Client 9", 40,
+                    mtn % 4 == 0 ? mtn : null, mtn % 4 != 0, null, start + mtn * TimeRollups.HOUR));
+        }
+        transactions.add(new Transaction(1_000, 500.0, "Client 0", 30, "Client 9", 40, null, true, null));
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher();
+        dataFetcher.appendBatch(transactions);
+        long day2 = start + TimeRollups.DAY;
+        long day3 = start + 2 * TimeRollups.DAY;
+
+        double expectedTotal = 0.0;
+        double expectedSent = 0.0;
+        for (int mtn = 24; mtn < 48; mtn++) {
+            expectedTotal += mtn % 50 + 1.0;
+            expectedSent += mtn % 3 == 1 ? mtn % 50 + 1.0 : 0.0;
+        }
+        assertEquals(expectedTotal, dataFetcher.getTotalTransactionAmount(day2, day3), 0.001);
+        assertEquals(expectedSent, dataFetcher.getTotalTransactionAmountSentBy("Client 1", day2, day3), 0.001);
+        assertEquals(48.0, dataFetcher.getMaxTransactionAmount(day2, day3), 0.0);
+        assertEquals(6, dataFetcher.countOpenIssues(day2, day3));
+
+        //compacting hours into days keeps whole-day answers and still tracks issues solved afterwards
+        dataFetcher.compactRollupsBefore(start + 5 * TimeRollups.DAY, TimeRollups.DAY);
+        assertTrue(dataFetcher.markIssueSolved(24));
+        assertEquals(expectedTotal, dataFetcher.getTotalTransactionAmount(day2, day3), 0.001);
+        assertEquals(expectedSent, dataFetcher.getTotalTransactionAmountSentBy("Client 1", day2, day3), 0.001);
+        assertEquals(5, dataFetcher.countOpenIssues(day2, day3));
+
+        //eviction drops old rollups only, the all-time queries still see every row
+        double allTime = dataFetcher.getTotalTransactionAmount();
+        double remaining = 0.0;
+        for (int mtn = 48; mtn < 24 * 10; mtn++) {
+            remaining += mtn % 50 + 1.0;
+        }
+        dataFetcher.evictRollupsBefore(day3);
+        dataFetcher.append(new Transaction(2_000, 7.0, "Client 0", 30, "Client 9", 40, null, true, null, start));
+        assertEquals(0.0, dataFetcher.getTotalTransactionAmount(start, day3), 0.0);
+        assertEquals(remaining, dataFetcher.getTotalTransactionAmount(day3, Long.MAX_VALUE), 0.001);
+        assertEquals(allTime + 7.0, dataFetcher.getTotalTransactionAmount(), 0.001);
+
+        //compacting into days once week buckets exist leaves the wider buckets alone
+        double rolledUp = dataFetcher.getTotalTransactionAmount(Long.MIN_VALUE, Long.MAX_VALUE);
+        dataFetcher.compactRollupsBefore(start + 10 * TimeRollups.DAY, 7 * TimeRollups.DAY);
+        dataFetcher.compactRollupsBefore(start + 10 * TimeRollups.DAY, TimeRollups.DAY);
+        assertEquals(rolledUp, dataFetcher.getTotalTransactionAmount(Long.MIN_VALUE, Long.MAX_VALUE), 0.001);
+    }
+
+    @Test
+    public void test_MarkIssueSolved_ShouldUpdateEveryIssueView() {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(Arrays.asList(
+                new Transaction(1, 10.0, "Tom Shelby", 22, "Aunt Polly", 34, 1, false, "Looks like money laundering"),
+                new Transaction(1, 10.0, "Tom Shelby", 22, "Aunt Polly", 34, 2, true, "Never gonna give you up"),
+                new Transaction(1, 10.0, "Tom Shelby", 22, "Aunt Polly", 34, 2, true, "Never gonna give you up"),
+                new Transaction(2, 20.0, "Arthur Shelby", 60, "Tom Shelby", 22, 3, false, "Something's fishy")));
+        Set<Integer> unsolvedIssueIds = dataFetcher.getUnsolvedIssueIds();
+
+        //repeated rows of an issue contribute one message, and polling without changes returns the same list
+        List<String> solvedIssueMessages = dataFetcher.getAllSolvedIssueMessages();
+        assertEquals(Collections.singletonList("Never gonna give you up"), solvedIssueMessages);
+        assertSame(solvedIssueMessages, dataFetcher.getAllSolvedIssueMessages());
+        assertEquals(new HashSet<>(Arrays.asList(1, 3)), unsolvedIssueIds);
+
+        assertTrue(dataFetcher.markIssueSolved(1));
+        assertFalse(dataFetcher.markIssueSolved(1));
+        assertFalse(dataFetcher.markIssueSolved(42));
+        assertEquals(new HashSet<>(Arrays.asList(1, 3)), unsolvedIssueIds);
+        assertEquals(Collections.singleton(3), dataFetcher.getUnsolvedIssueIds());
+        assertEquals(Arrays.asList("Looks like money laundering", "Never gonna give you up"),
+                dataFetcher.getAllSolvedIssueMessages());
+        assertTrue(dataFetcher.hasOpenComplianceIssues("Tom Shelby"));
+        assertFalse(dataFetcher.hasOpenComplianceIssues("Aunt Polly"));
+
+        assertTrue(dataFetcher.markIssueSolved(3));
+        assertTrue(dataFetcher.getUnsolvedIssueIds().isEmpty());
+        assertFalse(dataFetcher.hasOpenComplianceIssues("Tom Shelby"));
+    }
+
+    private static List<Integer> mtnsOf(List<Transaction> transactions) {
+        return transactions.stream().map(Transaction::getMtn).collect(Collectors.toList());
+    }
+
 }
 
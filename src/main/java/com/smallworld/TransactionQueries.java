@@ -0,0 +1,93 @@
+package com.smallworld;
+
+import com.smallworld.data.Transaction;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The questions that can be asked about the transactions loaded into a fetcher
+ */
+public interface TransactionQueries {
+
+    /**
+     * Returns the sum of the amounts of all transactions
+     */
+    double getTotalTransactionAmount();
+
+    /**
+     * Returns the sum of the amounts of all transactions sent by the specified client
+     */
+    double getTotalTransactionAmountSentBy(String senderFullName);
+
+    /**
+     * Returns the highest transaction amount
+     */
+    double getMaxTransactionAmount();
+
+    /**
+     * Counts the number of unique clients that sent or received a transaction
+     */
+    long countUniqueClients();
+
+    /**
+     * Returns whether a client (sender or beneficiary) has at least one transaction with a compliance
+     * issue that has not been solved
+     */
+    boolean hasOpenComplianceIssues(String clientFullName);
+
+    /**
+     * Returns all transactions indexed by beneficiary name
+     */
+    Map<String, Transaction> getTransactionsByBeneficiaryName();
+
+    /**
+     * Returns the identifiers of all open compliance issues
+     */
+    Set<Integer> getUnsolvedIssueIds();
+
+    /**
+     * Returns a list of all solved issue messages
+     */
+    List<String> getAllSolvedIssueMessages();
+
+    /**
+     * Returns the 3 transactions with the highest amount sorted by amount descending
+     */
+    List<Transaction> getTop3TransactionsByAmount();
+
+    /**
+     * Returns the k transactions with the highest amount sorted by amount descending
+     */
+    List<Transaction> getTopTransactionsByAmount(int k);
+
+    /**
+     * Returns the senderFullName of the sender with the most total sent amount
+     */
+    Optional<String> getTopSender();
+
+    /**
+     * Returns the number of rows read by full scans so far, 0 for implementations that do not track it
+     */
+    default long getScannedRows() {
+        return 0;
+    }
+
+    /**
+     * Returns a stamp that changes whenever rows are added or issues change, so a result computed under one
+     * version stays valid until it moves. Implementations whose data never changes can keep the default.
+     */
+    default long getDataVersion() {
+        return 0;
+    }
+
+    /**
+     * Computes every metric registered in the plan. The default runs each matching query on its own,
+     * implementations override it to share work between metrics.
+     */
+    default TransactionReport run(QueryPlan plan) {
+        return TransactionReport.runEach(this, plan);
+    }
+}
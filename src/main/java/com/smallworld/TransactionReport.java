@@ -0,0 +1,147 @@
+package com.smallworld;
+
+import com.smallworld.data.Transaction;
+
+import java.util.*;
+
+/**
+ * Results of a QueryPlan. Asking for a metric that was not part of the plan throws IllegalStateException.
+ */
+public class TransactionReport {
+
+    private Double totalAmount;
+    private Double maxAmount;
+    private Long uniqueClients;
+    private Optional<String> topSender;
+    private List<Transaction> topTransactions;
+    private List<String> solvedIssueMessages;
+    private Set<Integer> unsolvedIssueIds;
+    private Map<String, Transaction> transactionsByBeneficiaryName;
+    private final Map<String, Double> totalAmountSentBy = new LinkedHashMap<>();
+    private final Map<String, Boolean> openComplianceIssues = new LinkedHashMap<>();
+
+    /**
+     * Fills the report by calling the matching query for every metric of the plan, one after the other
+     */
+    static TransactionReport runEach(TransactionQueries queries, QueryPlan plan) {
+        TransactionReport report = new TransactionReport();
+        if (plan.hasTotalAmount()) {
+            report.totalAmount = queries.getTotalTransactionAmount();
+        }
+        if (plan.hasMaxAmount()) {
+            report.maxAmount = queries.getMaxTransactionAmount();
+        }
+        if (plan.hasUniqueClients()) {
+            report.uniqueClients = queries.countUniqueClients();
+        }
+        if (plan.hasTopSender()) {
+            report.topSender = queries.getTopSender();
+        }
+        if (plan.getTopTransactions() != QueryPlan.NO_TOP_TRANSACTIONS) {
+            report.topTransactions = queries.getTopTransactionsByAmount(plan.getTopTransactions());
+        }
+        if (plan.hasSolvedIssueMessages()) {
+            report.solvedIssueMessages = queries.getAllSolvedIssueMessages();
+        }
+        if (plan.hasUnsolvedIssueIds()) {
+            report.unsolvedIssueIds = Set.copyOf(queries.getUnsolvedIssueIds());
+        }
+        if (plan.hasTransactionsByBeneficiaryName()) {
+            report.transactionsByBeneficiaryName = queries.getTransactionsByBeneficiaryName();
+        }
+        for (String senderFullName : plan.getTotalAmountSentBy()) {
+            report.totalAmountSentBy.put(senderFullName, queries.getTotalTransactionAmountSentBy(senderFullName));
+        }
+        for (String clientFullName : plan.getOpenComplianceIssues()) {
+            report.openComplianceIssues.put(clientFullName, queries.hasOpenComplianceIssues(clientFullName));
+        }
+        return report;
+    }
+
+    void setTotalAmount(double totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+
+    void setMaxAmount(double maxAmount) {
+        this.maxAmount = maxAmount;
+    }
+
+    void setUniqueClients(long uniqueClients) {
+        this.uniqueClients = uniqueClients;
+    }
+
+    void setTopSender(Optional<String> topSender) {
+        this.topSender = topSender;
+    }
+
+    void setTopTransactions(List<Transaction> topTransactions) {
+        this.topTransactions = topTransactions;
+    }
+
+    void setSolvedIssueMessages(List<String> solvedIssueMessages) {
+        this.solvedIssueMessages = solvedIssueMessages;
+    }
+
+    void setUnsolvedIssueIds(Set<Integer> unsolvedIssueIds) {
+        this.unsolvedIssueIds = Set.copyOf(unsolvedIssueIds);
+    }
+
+    void setTransactionsByBeneficiaryName(Map<String, Transaction> transactionsByBeneficiaryName) {
+        this.transactionsByBeneficiaryName = transactionsByBeneficiaryName;
+    }
+
+    void putTotalAmountSentBy(String senderFullName, double totalAmount) {
+        totalAmountSentBy.put(senderFullName, totalAmount);
+    }
+
+    void putOpenComplianceIssues(String clientFullName, boolean hasOpenIssues) {
+        openComplianceIssues.put(clientFullName, hasOpenIssues);
+    }
+
+    public double getTotalAmount() {
+        return requested(totalAmount, "total amount");
+    }
+
+    public double getMaxAmount() {
+        return requested(maxAmount, "max amount");
+    }
+
+    public long getUniqueClients() {
+        return requested(uniqueClients, "unique clients");
+    }
+
+    public Optional<String> getTopSender() {
+        return requested(topSender, "top sender");
+    }
+
+    public List<Transaction> getTopTransactions() {
+        return requested(topTransactions, "top transactions");
+    }
+
+    public List<String> getSolvedIssueMessages() {
+        return requested(solvedIssueMessages, "solved issue messages");
+    }
+
+    public Set<Integer> getUnsolvedIssueIds() {
+        return requested(unsolvedIssueIds, "unsolved issue ids");
+    }
+
+    public Map<String, Transaction> getTransactionsByBeneficiaryName() {
+        return requested(transactionsByBeneficiaryName, "transactions by beneficiary name");
+    }
+
+    public double getTotalAmountSentBy(String senderFullName) {
+        return requested(totalAmountSentBy.get(senderFullName), "total amount sent by " + senderFullName);
+    }
+
+    public boolean hasOpenComplianceIssues(String clientFullName) {
+        return requested(openComplianceIssues.get(clientFullName), "open compliance issues of " + clientFullName);
+    }
+
+    private static <T> T requested(T value, String metric) {
+        if (value == null) {
+            throw new IllegalStateException("The " + metric + " was not part of the query plan");
+        }
+        return value;
+    }
+}
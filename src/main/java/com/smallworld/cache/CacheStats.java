@@ -0,0 +1,67 @@
+package com.smallworld.cache;
+
+/**
+ * Point-in-time counters of a result cache
+ */
+public class CacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidations;
+    private final int size;
+    private final int maximumSize;
+
+    public CacheStats(long hits, long misses, long evictions, long invalidations, int size, int maximumSize) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+        this.size = size;
+        this.maximumSize = maximumSize;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries dropped to stay within the maximum size
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of entries dropped because the data changed after they were computed
+     */
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Returns the share of lookups answered from the cache, 0 before the first lookup
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d misses=%d hitRate=%.3f evictions=%d invalidations=%d size=%d/%d",
+                hits, misses, getHitRate(), evictions, invalidations, size, maximumSize);
+    }
+}
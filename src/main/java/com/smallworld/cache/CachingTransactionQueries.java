@@ -0,0 +1,167 @@
+package com.smallworld.cache;
+
+import com.smallworld.QueryPlan;
+import com.smallworld.TransactionQueries;
+import com.smallworld.TransactionReport;
+import com.smallworld.data.Transaction;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Decorator that memoizes the results of the wrapped TransactionQueries in a size-bounded LRU cache. Every
+ * entry carries the data version it was computed under, and any append or issue change of the delegate moves
+ * that version, so a cached result is never served once the data behind it has changed.
+ *
+ * Cached are only the queries that scan every row: transactions by beneficiary and top k beyond 3. Queries the
+ * delegate already answers from a running aggregate or an index, including the per-client answers, the top
+ * sender and the client count, go straight through, since a lookup here would cost more than the answer.
+ * Collections returned from the cache are shared between callers and therefore read-only.
+ */
+public class CachingTransactionQueries implements TransactionQueries {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+
+    private final TransactionQueries delegate;
+    private final ResultCache cache;
+
+    public CachingTransactionQueries(TransactionQueries delegate) {
+        this(delegate, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public CachingTransactionQueries(TransactionQueries delegate, int maximumSize) {
+        this.delegate = delegate;
+        this.cache = new ResultCache(maximumSize);
+    }
+
+    @Override
+    public double getTotalTransactionAmount() {
+        return delegate.getTotalTransactionAmount();
+    }
+
+    @Override
+    public double getTotalTransactionAmountSentBy(String senderFullName) {
+        return delegate.getTotalTransactionAmountSentBy(senderFullName);
+    }
+
+    @Override
+    public double getMaxTransactionAmount() {
+        return delegate.getMaxTransactionAmount();
+    }
+
+    @Override
+    public long countUniqueClients() {
+        return delegate.countUniqueClients();
+    }
+
+    @Override
+    public boolean hasOpenComplianceIssues(String clientFullName) {
+        return delegate.hasOpenComplianceIssues(clientFullName);
+    }
+
+    /**
+     * Returns all transactions indexed by beneficiary name, as a read-only map
+     */
+    @Override
+    public Map<String, Transaction> getTransactionsByBeneficiaryName() {
+        return cache.get(new Key("getTransactionsByBeneficiaryName", null), delegate.getDataVersion(),
+                () -> Collections.unmodifiableMap(delegate.getTransactionsByBeneficiaryName()));
+    }
+
+    @Override
+    public Set<Integer> getUnsolvedIssueIds() {
+        return delegate.getUnsolvedIssueIds();
+    }
+
+    @Override
+    public List<String> getAllSolvedIssueMessages() {
+        return delegate.getAllSolvedIssueMessages();
+    }
+
+    @Override
+    public List<Transaction> getTop3TransactionsByAmount() {
+        return delegate.getTop3TransactionsByAmount();
+    }
+
+    /**
+     * Returns the k transactions with the highest amount sorted by amount descending, as a read-only list
+     */
+    @Override
+    public List<Transaction> getTopTransactionsByAmount(int k) {
+        if (k <= 3) {
+            return delegate.getTopTransactionsByAmount(k);
+        }
+        return cache.get(new Key("getTopTransactionsByAmount", k), delegate.getDataVersion(),
+                () -> Collections.unmodifiableList(delegate.getTopTransactionsByAmount(k)));
+    }
+
+    @Override
+    public Optional<String> getTopSender() {
+        return delegate.getTopSender();
+    }
+
+    @Override
+    public TransactionReport run(QueryPlan plan) {
+        return delegate.run(plan);
+    }
+
+    @Override
+    public long getScannedRows() {
+        return delegate.getScannedRows();
+    }
+
+    @Override
+    public long getDataVersion() {
+        return delegate.getDataVersion();
+    }
+
+    /**
+     * Returns the hit, miss, eviction and invalidation counts since the cache was created
+     */
+    public CacheStats getStats() {
+        return cache.getStats();
+    }
+
+    /**
+     * Drops every cached result, e.g. after the delegate changed in a way its data version does not cover
+     */
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    public TransactionQueries getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Query name plus its argument, null for queries without one
+     */
+    private static final class Key {
+
+        private final String query;
+        private final Object argument;
+
+        private Key(String query, Object argument) {
+            this.query = query;
+            this.argument = argument;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return query.equals(key.query) && Objects.equals(argument, key.argument);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * query.hashCode() + Objects.hashCode(argument);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.smallworld.cache;
+
+import com.smallworld.ConcurrentTransactionDataFetcher;
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.Transaction;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class CachingTransactionQueriesTest {
+
+    @Test
+    public void test_CachedResults_ShouldBeInvalidatedByAppendsAndSolvedIssues() {
+        //bulk loaded, so the first cached results are stamped with the version the load left behind
+        TransactionDataFetcher fetcher = new TransactionDataFetcher(Arrays.asList(
+                new Transaction(1, 100, "Tom Shelby", 22, "Alfie Solomons", 33, 1, false, "Looks like money laundering"),
+                new Transaction(2, 50, "Arthur Shelby", 60, "Aberama Gold", 58, null, true, null)));
+        assertEquals(3, fetcher.getDataVersion());
+        CachingTransactionQueries queries = new CachingTransactionQueries(fetcher);
+
+        Map<String, Transaction> byBeneficiary = queries.getTransactionsByBeneficiaryName();
+        assertSame(byBeneficiary, queries.getTransactionsByBeneficiaryName());
+        List<Transaction> top = queries.getTopTransactionsByAmount(4);
+        assertSame(top, queries.getTopTransactionsByAmount(4));
+        assertEquals(2, queries.getStats().getHits());
+        assertEquals(2, queries.getStats().getMisses());
+
+        //answers the fetcher keeps running aggregates for go straight through
+        assertTrue(queries.hasOpenComplianceIssues("Alfie Solomons"));
+        assertEquals(Optional.of("Tom Shelby"), queries.getTopSender());
+        assertEquals(50, queries.getTotalTransactionAmountSentBy("Arthur Shelby"), 0.0);
+        assertEquals(4, queries.countUniqueClients());
+        assertEquals(2, queries.getStats().getHits());
+        assertEquals(2, queries.getStats().getMisses());
+        assertEquals(2, queries.getStats().getSize());
+
+        fetcher.markIssueSolved(1);
+        assertFalse(queries.hasOpenComplianceIssues("Alfie Solomons"));
+        assertNotSame(byBeneficiary, queries.getTransactionsByBeneficiaryName());
+
+        fetcher.append(new Transaction(3, 200, "Arthur Shelby", 60, "Tom Shelby", 22, null, true, null));
+        byBeneficiary = queries.getTransactionsByBeneficiaryName();
+        assertEquals(3, byBeneficiary.size());
+        assertSame(byBeneficiary, queries.getTransactionsByBeneficiaryName());
+        assertEquals(Arrays.asList(3, 1, 2), queries.getTopTransactionsByAmount(4).stream()
+                .map(Transaction::getMtn).collect(Collectors.toList()));
+
+        CacheStats stats = queries.getStats();
+        assertEquals(3, stats.getInvalidations());
+        assertEquals(3, stats.getHits());
+        assertEquals(3.0 / 8, stats.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void test_Cache_ShouldEvictTheLeastRecentlyUsedResult() {
+        ConcurrentTransactionDataFetcher fetcher = new ConcurrentTransactionDataFetcher();
+        for (int mtn = 0; mtn < 10; mtn++) {
+            fetcher.append(new Transaction(mtn, mtn, "Client " + mtn, 30, "Client " + (mtn + 1), 40, null, true, null));
+        }
+        CachingTransactionQueries queries = new CachingTransactionQueries(fetcher, 2);
+
+        queries.getTopTransactionsByAmount(4);
+        queries.getTopTransactionsByAmount(5);
+        //touching the top 4 leaves the top 5 as the least recently used entry
+        queries.getTopTransactionsByAmount(4);
+        queries.getTopTransactionsByAmount(6);
+        assertEquals(1, queries.getStats().getEvictions());
+        assertEquals(2, queries.getStats().getSize());
+
+        queries.getTopTransactionsByAmount(4);
+        assertEquals(2, queries.getStats().getHits());
+        queries.getTopTransactionsByAmount(5);
+        assertEquals(4, queries.getStats().getMisses());
+
+        List<Transaction> top = queries.getTopTransactionsByAmount(5);
+        assertEquals(9, top.get(0).getMtn());
+        fetcher.append(new Transaction(10, 100, "Client 10", 30, "Client 0", 40, null, true, null));
+        assertEquals(10, queries.getTopTransactionsByAmount(5).get(0).getMtn());
+    }
+}
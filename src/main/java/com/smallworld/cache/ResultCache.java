@@ -0,0 +1,94 @@
+package com.smallworld.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Size-bounded LRU map of query results, each stamped with the data version it was computed under. A lookup
+ * under any other version is a miss that drops the stale entry, so a change of the data invalidates everything
+ * without walking the map. Lookups and inserts hold the map's lock only briefly, results are computed outside
+ * of it and two threads missing the same key at once may both compute it.
+ */
+class ResultCache {
+
+    private final int maximumSize;
+    //access ordered, the eldest entry is the least recently used one
+    private final LinkedHashMap<Object, Entry> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    ResultCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be positive but was " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                if (size() > ResultCache.this.maximumSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached result of the key when it was computed under the version, otherwise computes, caches
+     * and returns it. The version must be read before the data the loader looks at.
+     */
+    @SuppressWarnings("unchecked")
+    <V> V get(Object key, long version, Supplier<V> loader) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.version == version) {
+                    hits.increment();
+                    return (V) entry.value;
+                }
+                entries.remove(key);
+                invalidations.increment();
+            }
+        }
+        misses.increment();
+        V value = loader.get();
+        synchronized (entries) {
+            Entry current = entries.get(key);
+            //keeping a result computed under a newer version in place
+            if (current == null || current.version < version) {
+                entries.put(key, new Entry(version, value));
+            }
+        }
+        return value;
+    }
+
+    void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    CacheStats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(), size, maximumSize);
+    }
+
+    private static final class Entry {
+
+        private final long version;
+        private final Object value;
+
+        private Entry(long version, Object value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
@@ -11,6 +11,31 @@ public class Transaction {
     private Integer issueId;
     private boolean issueSolved;
     private String issueMessage;
+    //optional event time in epoch milliseconds, null for exports that do not carry it
+    private Long timestamp;
+
+    public Transaction() {
+    }
+
+    public Transaction(int mtn, double amount, String senderFullName, int senderAge, String beneficiaryFullName,
+                       int beneficiaryAge, Integer issueId, boolean issueSolved, String issueMessage) {
+        this.mtn = mtn;
+        this.amount = amount;
+        this.senderFullName = senderFullName;
+        this.senderAge = senderAge;
+        this.beneficiaryFullName = beneficiaryFullName;
+        this.beneficiaryAge = beneficiaryAge;
+        this.issueId = issueId;
+        this.issueSolved = issueSolved;
+        this.issueMessage = issueMessage;
+    }
+
+    public Transaction(int mtn, double amount, String senderFullName, int senderAge, String beneficiaryFullName,
+                       int beneficiaryAge, Integer issueId, boolean issueSolved, String issueMessage, Long timestamp) {
+        this(mtn, amount, senderFullName, senderAge, beneficiaryFullName, beneficiaryAge, issueId, issueSolved,
+                issueMessage);
+        this.timestamp = timestamp;
+    }
 
     //adding only getters
     public int getMtn() {
@@ -49,6 +74,10 @@ public class Transaction {
         return issueMessage;
     }
 
+    public Long getTimestamp() {
+        return timestamp;
+    }
+
     @Override
     public String toString() {
         return "Transaction mtn: " + mtn +
@@ -59,6 +88,7 @@ public class Transaction {
                 ", beneficiaryAge: " + beneficiaryAge +
                 ", issueId: " + issueId +
                 ", issueSolved: " + issueSolved +
-                ", IssueMessage: " + issueMessage;
+                ", IssueMessage: " + issueMessage +
+                (timestamp != null ? ", timestamp: " + timestamp : "");
     }
 }
@@ -0,0 +1,69 @@
+package com.smallworld.io;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Summary of a directory load: how many files and rows were read, how long it took and which files failed
+ */
+public class DirectoryLoadStats {
+
+    private final int files;
+    private final long rows;
+    private final long elapsedNanos;
+    private final Map<Path, String> failedFiles;
+    private final Map<Path, Long> failedFileRows;
+
+    public DirectoryLoadStats(int files, long rows, long elapsedNanos, Map<Path, String> failedFiles,
+                              Map<Path, Long> failedFileRows) {
+        this.files = files;
+        this.rows = rows;
+        this.elapsedNanos = elapsedNanos;
+        this.failedFiles = Collections.unmodifiableMap(failedFiles);
+        this.failedFileRows = Collections.unmodifiableMap(failedFileRows);
+    }
+
+    public int getFiles() {
+        return files;
+    }
+
+    /**
+     * Returns the number of rows handed to the consumer, including those read from a failed file before its error
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns the error of every file that could not be read to the end, keyed by file
+     */
+    public Map<Path, String> getFailedFiles() {
+        return failedFiles;
+    }
+
+    /**
+     * Returns how many rows of every failed file were handed to the consumer before its error, 0 for a file
+     * that contributed nothing, so a partly loaded file can be told apart from a missing one
+     */
+    public Map<Path, Long> getFailedFileRows() {
+        return failedFileRows;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : rows * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "files: " + files +
+                ", rows: " + rows +
+                ", elapsed: " + elapsedNanos / 1_000_000 + " ms" +
+                ", rows/sec: " + Math.round(getRowsPerSecond()) +
+                ", failed files: " + failedFiles.size();
+    }
+}
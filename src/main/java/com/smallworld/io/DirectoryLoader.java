@@ -0,0 +1,264 @@
+package com.smallworld.io;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smallworld.data.Transaction;
+import com.smallworld.metrics.MetricsSink;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Loads every JSON export in a directory. Files are parsed in parallel on a bounded pool of threads, each
+ * streaming its rows into batches on a bounded queue, and the calling thread is the single consumer that hands
+ * the batches on, e.g. to TransactionDataFetcher.appendBatch. A full queue blocks the parsers until the
+ * consumer catches up, so at most queueCapacity batches are ever in flight.
+ *
+ * The rows of a file arrive in file order but batches of different files interleave. A batch is only cut
+ * between rows of different mtns, so the rows of a transaction always arrive together. A file that fails to
+ * parse is reported in the stats and the load goes on with the other files. By default the rows read from it
+ * before the error have already been handed on, and the stats count them per failed file. A loader built with
+ * wholeFiles holds every file's batches back until the file has been read to the end and drops them when it
+ * fails, at the cost of keeping the files being parsed on the heap in full.
+ */
+public class DirectoryLoader {
+
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+
+    private final ObjectMapper objectMapper;
+    private final MetricsSink metricsSink;
+    private final int parallelism;
+    private final int batchSize;
+    private final int queueCapacity;
+    private final boolean wholeFiles;
+
+    /**
+     * Creates a loader that parses on every core but one, which is left to the consumer
+     */
+    public DirectoryLoader() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    public DirectoryLoader(int parallelism) {
+        this(new ObjectMapper(), MetricsSink.NONE, parallelism, DEFAULT_BATCH_SIZE, 4 * parallelism);
+    }
+
+    /**
+     * @param parallelism   number of files parsed at the same time
+     * @param batchSize     rows per batch handed to the consumer, more when the rows of a transaction run past it
+     * @param queueCapacity batches parsed ahead of the consumer before the parsers block
+     */
+    public DirectoryLoader(ObjectMapper objectMapper, MetricsSink metricsSink, int parallelism, int batchSize,
+                           int queueCapacity) {
+        this(objectMapper, metricsSink, parallelism, batchSize, queueCapacity, false);
+    }
+
+    /**
+     * @param wholeFiles whether a file's rows are handed on only once the whole file has been read, so a failed
+     *                   file contributes no rows at all
+     */
+    public DirectoryLoader(ObjectMapper objectMapper, MetricsSink metricsSink, int parallelism, int batchSize,
+                           int queueCapacity, boolean wholeFiles) {
+        if (parallelism < 1 || batchSize < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Parallelism, batch size and queue capacity must be positive but were "
+                    + parallelism + ", " + batchSize + " and " + queueCapacity);
+        }
+        this.objectMapper = objectMapper;
+        this.metricsSink = metricsSink;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        this.wholeFiles = wholeFiles;
+    }
+
+    /**
+     * Returns the .json and .json.gz files directly inside the directory, sorted by name so hourly exports come
+     * in time order
+     */
+    public static List<Path> findFiles(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.endsWith(".json") || name.endsWith(".json.gz");
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Parses every export in the directory and hands the rows to the consumer in batches, on the calling thread.
+     * Returns once every file has been read or has failed. An Error thrown by a parser, e.g. an
+     * OutOfMemoryError, is rethrown here and ends the load.
+     */
+    public DirectoryLoadStats load(Path directory, Consumer<List<Transaction>> batchConsumer) throws IOException {
+        List<Path> files = findFiles(directory);
+        long start = System.nanoTime();
+        BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(queueCapacity);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, files.size())),
+                new ParserThreadFactory());
+        //one reader per parser thread, sharing one would serialize the parsers on its string dictionary
+        ThreadLocal<TransactionStreamReader> readers =
+                ThreadLocal.withInitial(() -> new TransactionStreamReader(objectMapper, metricsSink));
+        try {
+            for (Path file : files) {
+                pool.execute(() -> parse(file, readers.get(), queue));
+            }
+            long rows = 0;
+            int finishedFiles = 0;
+            Map<Path, String> failedFiles = new TreeMap<>();
+            Map<Path, Long> failedFileRows = new TreeMap<>();
+            //rows handed on so far of every file still being parsed, or its held back batches with wholeFiles
+            Map<Path, Long> fileRows = new HashMap<>();
+            Map<Path, List<List<Transaction>>> heldBack = new HashMap<>();
+            while (finishedFiles < files.size()) {
+                Batch batch = queue.take();
+                if (wholeFiles) {
+                    List<List<Transaction>> batches = heldBack.computeIfAbsent(batch.file, file -> new ArrayList<>());
+                    if (!batch.rows.isEmpty()) {
+                        batches.add(batch.rows);
+                    }
+                    if (batch.last) {
+                        heldBack.remove(batch.file);
+                        if (batch.error == null) {
+                            for (List<Transaction> held : batches) {
+                                batchConsumer.accept(held);
+                                rows += held.size();
+                            }
+                        }
+                    }
+                } else if (!batch.rows.isEmpty()) {
+                    batchConsumer.accept(batch.rows);
+                    rows += batch.rows.size();
+                    fileRows.merge(batch.file, (long) batch.rows.size(), Long::sum);
+                }
+                if (batch.last) {
+                    finishedFiles++;
+                    long committed = fileRows.getOrDefault(batch.file, 0L);
+                    fileRows.remove(batch.file);
+                    if (batch.error instanceof Error) {
+                        throw (Error) batch.error;
+                    }
+                    if (batch.error != null) {
+                        failedFiles.put(batch.file, batch.error.toString());
+                        failedFileRows.put(batch.file, committed);
+                    }
+                }
+            }
+            return new DirectoryLoadStats(files.size(), rows, System.nanoTime() - start, failedFiles, failedFileRows);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading " + directory);
+        } finally {
+            //stops parsers still blocked on the queue when the consumer failed
+            pool.shutdownNow();
+        }
+    }
+
+    private void parse(Path file, TransactionStreamReader reader, BlockingQueue<Batch> queue) {
+        Batcher batcher = new Batcher(file, queue);
+        Throwable error = null;
+        try {
+            reader.read(file, batcher);
+        } catch (LoadCancelledException e) {
+            return;
+        } catch (Throwable e) {
+            //the last batch has to go out whatever happened, an Error then fails the whole load
+            error = e;
+        }
+        try {
+            batcher.finish(error);
+        } catch (LoadCancelledException e) {
+            //the consumer is gone, nobody waits for the end of this file
+        }
+    }
+
+    /**
+     * Collects the rows of one file into batches and puts every full batch on the queue once the next row starts
+     * another transaction
+     */
+    private final class Batcher implements Consumer<Transaction> {
+
+        private final Path file;
+        private final BlockingQueue<Batch> queue;
+        private List<Transaction> rows = new ArrayList<>(batchSize);
+
+        private Batcher(Path file, BlockingQueue<Batch> queue) {
+            this.file = file;
+            this.queue = queue;
+        }
+
+        @Override
+        public void accept(Transaction transaction) {
+            if (rows.size() >= batchSize && rows.get(rows.size() - 1).getMtn() != transaction.getMtn()) {
+                put(new Batch(file, rows, null, false));
+                rows = new ArrayList<>(batchSize);
+            }
+            rows.add(transaction);
+        }
+
+        private void finish(Throwable error) {
+            put(new Batch(file, rows, error, true));
+        }
+
+        private void put(Batch batch) {
+            try {
+                queue.put(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LoadCancelledException();
+            }
+        }
+    }
+
+    /**
+     * Rows of a file, the last batch of every file also carries its error if it failed
+     */
+    private static final class Batch {
+
+        private final Path file;
+        private final List<Transaction> rows;
+        private final Throwable error;
+        private final boolean last;
+
+        private Batch(Path file, List<Transaction> rows, Throwable error, boolean last) {
+            this.file = file;
+            this.rows = rows;
+            this.error = error;
+            this.last = last;
+        }
+    }
+
+    /**
+     * Thrown inside a parser when the load was abandoned while it waited for room on the queue
+     */
+    private static final class LoadCancelledException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static final class ParserThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "directory-loader-" + count.incrementAndGet());
+            //never keeping the JVM alive for a load nobody waits for any more
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
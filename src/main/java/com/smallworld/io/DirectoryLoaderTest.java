@@ -0,0 +1,140 @@
+package com.smallworld.io;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.Transaction;
+import com.smallworld.metrics.FetcherMetrics;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class DirectoryLoaderTest {
+
+    private static String rows(int firstMtn, int count) {
+        StringBuilder json = new StringBuilder("[");
+        for (int mtn = firstMtn; mtn < firstMtn + count; mtn++) {
+            json.append(mtn == firstMtn ? "" : ",")
+                    .append("{\"mtn\": ").append(mtn).append(", \"amount\": 10.0, \"senderFullName\": \"Tom Shelby\",")
+                    .append(" \"beneficiaryFullName\": \"Client ").append(mtn).append("\", \"issueSolved\": true}");
+        }
+        return json.append("]").toString();
+    }
+
+    @Test
+    public void test_Load_ShouldReadEveryExportAndSkipPastAMalformedFile() throws IOException {
+        Path directory = Files.createTempDirectory("exports");
+        try {
+            Files.writeString(directory.resolve("2024-01-01T00.json"), rows(0, 100));
+            Files.writeString(directory.resolve("2024-01-01T01.json"), rows(100, 100));
+            try (OutputStream gzip = new GZIPOutputStream(Files.newOutputStream(directory.resolve("2024-01-01T02.json.gz")))) {
+                gzip.write(rows(200, 100).getBytes(StandardCharsets.UTF_8));
+            }
+            //5 complete rows, then the export was cut off
+            String truncated = rows(300, 6);
+            Files.writeString(directory.resolve("2024-01-01T03.json"), truncated.substring(0, truncated.lastIndexOf('{') + 10));
+            Files.writeString(directory.resolve("README.txt"), "not an export");
+
+            assertEquals(4, DirectoryLoader.findFiles(directory).size());
+
+            FetcherMetrics metrics = new FetcherMetrics();
+            //a tiny queue and batches make the parsers wait on the consumer all the time
+            DirectoryLoader loader = new DirectoryLoader(new ObjectMapper(), metrics, 3, 7, 1);
+            TransactionDataFetcher fetcher = new TransactionDataFetcher();
+            DirectoryLoadStats stats = loader.load(directory, fetcher::appendBatch);
+
+            assertEquals(4, stats.getFiles());
+            assertEquals(305, stats.getRows());
+            assertEquals(List.of(directory.resolve("2024-01-01T03.json")), List.copyOf(stats.getFailedFiles().keySet()));
+            assertEquals(305, fetcher.getTransactionCount());
+            assertEquals(3050.0, fetcher.getTotalTransactionAmountSentBy("Tom Shelby"), 0.0);
+            assertEquals(306, fetcher.countUniqueClients());
+            assertEquals(1, metrics.getLoad().getParseErrors());
+            assertEquals(Map.of(directory.resolve("2024-01-01T03.json"), 5L), stats.getFailedFileRows());
+
+            //holding whole files back leaves nothing of the broken hour behind
+            DirectoryLoader wholeFileLoader = new DirectoryLoader(new ObjectMapper(), metrics, 3, 7, 1, true);
+            TransactionDataFetcher wholeFileFetcher = new TransactionDataFetcher();
+            DirectoryLoadStats wholeFileStats = wholeFileLoader.load(directory, wholeFileFetcher::appendBatch);
+            assertEquals(300, wholeFileStats.getRows());
+            assertEquals(300, wholeFileFetcher.getTransactionCount());
+            assertEquals(Map.of(directory.resolve("2024-01-01T03.json"), 0L), wholeFileStats.getFailedFileRows());
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_Load_ShouldStopTheParsersWhenTheConsumerFails() throws IOException {
+        Path directory = Files.createTempDirectory("exports");
+        try {
+            for (int file = 0; file < 4; file++) {
+                Files.writeString(directory.resolve(file + ".json"), rows(file * 1000, 1000));
+            }
+            DirectoryLoader loader = new DirectoryLoader(new ObjectMapper(), new FetcherMetrics(), 2, 10, 1);
+            try {
+                loader.load(directory, batch -> {
+                    throw new IllegalStateException("Store is full");
+                });
+                fail("The consumer's failure should end the load");
+            } catch (IllegalStateException e) {
+                assertEquals("Store is full", e.getMessage());
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void test_Load_ShouldFailWhenAParserThrowsAnError() throws IOException {
+        Path directory = Files.createTempDirectory("exports");
+        try {
+            for (int file = 0; file < 3; file++) {
+                Files.writeString(directory.resolve(file + ".json"), rows(file * 100, 100));
+            }
+            ObjectMapper objectMapper = new ObjectMapper().registerModule(new SimpleModule()
+                    .addDeserializer(Transaction.class, new JsonDeserializer<Transaction>() {
+                        @Override
+                        public Transaction deserialize(JsonParser parser, DeserializationContext context) {
+                            throw new StackOverflowError("Nested too deep");
+                        }
+                    }));
+            DirectoryLoader loader = new DirectoryLoader(objectMapper, new FetcherMetrics(), 2, 10, 1);
+            try {
+                loader.load(directory, batch -> {
+                });
+                fail("An Error in a parser should end the load instead of leaving it waiting for the file");
+            } catch (StackOverflowError e) {
+                assertEquals("Nested too deep", e.getMessage());
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+}
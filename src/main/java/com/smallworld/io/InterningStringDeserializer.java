@@ -0,0 +1,48 @@
+package com.smallworld.io;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StringDeserializer;
+import com.smallworld.store.StringDictionary;
+
+import java.io.IOException;
+
+/**
+ * String deserializer that resolves every string value against a shared dictionary straight from the parser's
+ * character buffer. A value seen before costs a hash and a compare and allocates nothing, and every row gets
+ * the same instance, with its hash already cached, for the same name or message.
+ *
+ * The dictionary keeps every distinct value alive for as long as the deserializer is in use. Lookups are
+ * synchronized on it, so one deserializer can serve parsers on several threads.
+ */
+public class InterningStringDeserializer extends StdScalarDeserializer<String> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final StringDictionary dictionary;
+
+    public InterningStringDeserializer(StringDictionary dictionary) {
+        super(String.class);
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public String deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_STRING) {
+            //numbers, booleans and embedded values keep Jackson's own coercion rules
+            return StringDeserializer.instance.deserialize(parser, context);
+        }
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int length = parser.getTextLength();
+        synchronized (dictionary) {
+            return dictionary.decode(dictionary.encode(chars, offset, length));
+        }
+    }
+
+    public StringDictionary getDictionary() {
+        return dictionary;
+    }
+}
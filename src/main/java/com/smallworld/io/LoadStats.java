@@ -0,0 +1,44 @@
+package com.smallworld.io;
+
+/**
+ * Summary of a single load run: how many rows were read, how long it took and the highest heap usage observed
+ */
+public class LoadStats {
+
+    private final long rows;
+    private final long elapsedNanos;
+    private final long peakHeapBytes;
+
+    public LoadStats(long rows, long elapsedNanos, long peakHeapBytes) {
+        this.rows = rows;
+        this.elapsedNanos = elapsedNanos;
+        this.peakHeapBytes = peakHeapBytes;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    /**
+     * Returns the load throughput, or 0 when nothing was timed
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : rows * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "rows: " + rows +
+                ", elapsed: " + elapsedNanos / 1_000_000 + " ms" +
+                ", rows/sec: " + Math.round(getRowsPerSecond()) +
+                ", peak heap: " + peakHeapBytes / (1024 * 1024) + " MB";
+    }
+}
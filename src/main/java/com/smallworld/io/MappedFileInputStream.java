@@ -0,0 +1,78 @@
+package com.smallworld.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * InputStream over a memory-mapped file. A single mapping is limited to 2GB, so bigger files are mapped
+ * window by window as the stream advances.
+ */
+public class MappedFileInputStream extends InputStream {
+
+    //size of each mapped window, kept below the 2GB limit of a single mapping
+    static final long WINDOW_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private long windowStart;
+    private MappedByteBuffer window;
+
+    public MappedFileInputStream(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.windowStart = 0;
+        this.window = map(0);
+    }
+
+    private MappedByteBuffer map(long position) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+    }
+
+    /**
+     * Moves to the next window when the current one is exhausted. Returns false at end of file.
+     */
+    private boolean ensureRemaining() throws IOException {
+        if (window.hasRemaining()) {
+            return true;
+        }
+        long next = windowStart + window.capacity();
+        if (next >= size) {
+            return false;
+        }
+        windowStart = next;
+        window = map(next);
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return ensureRemaining() ? window.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!ensureRemaining()) {
+            return -1;
+        }
+        int count = Math.min(length, window.remaining());
+        window.get(buffer, offset, count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, size - windowStart - window.position());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
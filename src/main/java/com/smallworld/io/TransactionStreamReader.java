@@ -0,0 +1,143 @@
+package com.smallworld.io;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.smallworld.data.Transaction;
+import com.smallworld.metrics.MetricsSink;
+import com.smallworld.store.StringDictionary;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a JSON array of transactions token by token and hands every row to a consumer as soon as it is parsed,
+ * so the export never has to fit on the heap as a single list. Gzip compressed input is detected automatically.
+ * Names and messages are interned as they are parsed, so rows share one String instance per distinct value.
+ *
+ * The dictionary is never trimmed: every distinct name and issue message read, free text included, stays on the
+ * heap for as long as the reader is reachable. A long running process reading an open-ended feed should create
+ * a new reader per load, or per few loads, to let the strings of earlier loads go.
+ */
+public class TransactionStreamReader {
+
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    //heap usage is sampled every this many rows, reading it on every row would dominate the parse
+    private static final int HEAP_SAMPLE_INTERVAL = 1024;
+
+    private final ObjectMapper objectMapper;
+    private final ObjectReader transactionReader;
+    private final MetricsSink metricsSink;
+    //every distinct string read so far, shared by all loads of this reader
+    private final StringDictionary strings = new StringDictionary();
+
+    public TransactionStreamReader() {
+        this(new ObjectMapper());
+    }
+
+    public TransactionStreamReader(ObjectMapper objectMapper) {
+        this(objectMapper, MetricsSink.NONE);
+    }
+
+    /**
+     * Creates a reader that reports the rows and time of every load, and every input it fails to parse. The
+     * mapper is copied before the interning string deserializer is registered, the given one is left untouched.
+     */
+    public TransactionStreamReader(ObjectMapper objectMapper, MetricsSink metricsSink) {
+        this.objectMapper = objectMapper.copy()
+                .registerModule(new SimpleModule().addDeserializer(String.class, new InterningStringDeserializer(strings)));
+        this.transactionReader = this.objectMapper.readerFor(Transaction.class);
+        this.metricsSink = metricsSink;
+    }
+
+    /**
+     * Returns the dictionary of every distinct string value read so far, names and messages alike. It only
+     * grows, see the class doc.
+     */
+    public StringDictionary getStrings() {
+        return strings;
+    }
+
+    /**
+     * Streams the transactions of the given file, buffered from disk
+     */
+    public LoadStats read(Path path, Consumer<Transaction> consumer) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            return read(inputStream, consumer);
+        }
+    }
+
+    /**
+     * Streams the transactions of the given file, reading it through a memory mapping
+     */
+    public LoadStats readMapped(Path path, Consumer<Transaction> consumer) throws IOException {
+        try (InputStream inputStream = new MappedFileInputStream(path)) {
+            return read(inputStream, consumer);
+        }
+    }
+
+    /**
+     * Streams the transactions of the given input. The stream is not closed.
+     */
+    public LoadStats read(InputStream inputStream, Consumer<Transaction> consumer) throws IOException {
+        try {
+            LoadStats stats = parse(inputStream, consumer);
+            metricsSink.recordLoad(stats.getRows(), stats.getElapsedNanos());
+            return stats;
+        } catch (IOException e) {
+            metricsSink.recordParseError(e);
+            throw e;
+        }
+    }
+
+    private LoadStats parse(InputStream inputStream, Consumer<Transaction> consumer) throws IOException {
+        long start = System.nanoTime();
+        long rows = 0;
+        long peakHeap = usedHeap();
+        try (JsonParser parser = objectMapper.getFactory().createParser(decompressIfNeeded(inputStream))) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of transactions but found " + parser.currentToken());
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                consumer.accept(transactionReader.readValue(parser));
+                if (++rows % HEAP_SAMPLE_INTERVAL == 0) {
+                    peakHeap = Math.max(peakHeap, usedHeap());
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_ARRAY) {
+                throw new IOException("Unexpected token " + parser.currentToken() + " after " + rows + " transactions");
+            }
+        }
+        peakHeap = Math.max(peakHeap, usedHeap());
+        return new LoadStats(rows, System.nanoTime() - start, peakHeap);
+    }
+
+    /**
+     * Wraps the stream in a gzip decoder when it starts with the gzip magic bytes
+     */
+    static InputStream decompressIfNeeded(InputStream inputStream) throws IOException {
+        InputStream buffered = inputStream.markSupported() ? inputStream : new BufferedInputStream(inputStream, BUFFER_SIZE);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        if (first == GZIP_MAGIC_1 && second == GZIP_MAGIC_2) {
+            return new GZIPInputStream(buffered, BUFFER_SIZE);
+        }
+        return buffered;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,82 @@
+package com.smallworld.io;
+
+import com.smallworld.data.Transaction;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class TransactionStreamReaderTest {
+
+    private static final String JSON = "[" +
+            "{\"mtn\": 1, \"amount\": 150.2, \"senderFullName\": \"Tom Shelby\", \"senderAge\": 22," +
+            " \"beneficiaryFullName\": \"Arthur Shelby\", \"beneficiaryAge\": 60," +
+            " \"issueId\": 2, \"issueSolved\": true, \"issueMessage\": \"Never gonna give you up\"}," +
+            "{\"mtn\": 2, \"amount\": 67.8, \"senderFullName\": \"Aunt Polly\", \"senderAge\": 34," +
+            " \"beneficiaryFullName\": \"Aberama Gold\", \"beneficiaryAge\": 58," +
+            " \"issueId\": null, \"issueSolved\": true, \"issueMessage\": null}" +
+            "]";
+
+    @Test
+    public void test_Read_ShouldStreamEveryRow() throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        LoadStats stats = new TransactionStreamReader()
+                .read(new ByteArrayInputStream(JSON.getBytes(StandardCharsets.UTF_8)), transactions::add);
+
+        assertEquals(2, stats.getRows());
+        assertEquals(2, transactions.size());
+        assertEquals(1, transactions.get(0).getMtn());
+        assertEquals("Arthur Shelby", transactions.get(0).getBeneficiaryFullName());
+        assertNull(transactions.get(1).getIssueId());
+    }
+
+    @Test
+    public void test_ReadMapped_ShouldDecompressGzipFiles() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(JSON.getBytes(StandardCharsets.UTF_8));
+        }
+        Path file = Files.createTempFile("transactions", ".json.gz");
+        try {
+            Files.write(file, compressed.toByteArray());
+            List<Transaction> transactions = new ArrayList<>();
+            LoadStats stats = new TransactionStreamReader().readMapped(file, transactions::add);
+
+            assertEquals(2, stats.getRows());
+            assertEquals(67.8, transactions.get(1).getAmount(), 0.001);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void test_Read_ShouldShareOneInstancePerDistinctString() throws IOException {
+        TransactionStreamReader reader = new TransactionStreamReader();
+        List<Transaction> transactions = new ArrayList<>();
+        reader.read(new ByteArrayInputStream(JSON.getBytes(StandardCharsets.UTF_8)), transactions::add);
+        reader.read(new ByteArrayInputStream(JSON.getBytes(StandardCharsets.UTF_8)), transactions::add);
+
+        assertEquals(4, transactions.size());
+        assertSame(transactions.get(0).getSenderFullName(), transactions.get(2).getSenderFullName());
+        assertSame(transactions.get(0).getIssueMessage(), transactions.get(2).getIssueMessage());
+        assertNull(transactions.get(3).getIssueMessage());
+        //4 names and 1 message
+        assertEquals(5, reader.getStrings().size());
+        assertEquals("Tom Shelby", reader.getStrings().decode(reader.getStrings().find("Tom Shelby")));
+    }
+
+    @Test(expected = IOException.class)
+    public void test_Read_ShouldRejectInputThatIsNotAnArray() throws IOException {
+        new TransactionStreamReader()
+                .read(new ByteArrayInputStream("{\"mtn\": 1}".getBytes(StandardCharsets.UTF_8)), transaction -> { });
+    }
+}
@@ -0,0 +1,160 @@
+package com.smallworld.metrics;
+
+import com.smallworld.TransactionQueries;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory metrics sink: per-method call counts, latency histograms, rows scanned and allocated bytes, plus
+ * load throughput and parse errors. Everything can be published as MBeans on the platform MBean server, and
+ * recording can be switched off at runtime, after which instrumented calls go straight to the delegate.
+ */
+public class FetcherMetrics implements MetricsSink {
+
+    private static final String DOMAIN = "com.smallworld";
+
+    private final Map<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+    private final LoadMetrics load = new LoadMetrics();
+    private final LongAdder shardErrors = new LongAdder();
+    private volatile boolean enabled = true;
+    //name the MBeans are published under, null while they are not; guarded by this
+    private String jmxName;
+
+    /**
+     * Returns a view of the queries that records every call into these metrics
+     */
+    public InstrumentedTransactionQueries instrument(TransactionQueries queries) {
+        return new InstrumentedTransactionQueries(queries, this);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void recordCall(String method, long elapsedNanos, long rowsScanned, long allocatedBytes) {
+        getMethod(method).record(elapsedNanos, rowsScanned, allocatedBytes);
+    }
+
+    @Override
+    public void recordLoad(long rows, long elapsedNanos) {
+        if (enabled) {
+            load.recordLoad(rows, elapsedNanos);
+        }
+    }
+
+    @Override
+    public void recordParseError(Exception error) {
+        if (enabled) {
+            load.recordParseError();
+        }
+    }
+
+    @Override
+    public void recordShardError(Exception error) {
+        if (enabled) {
+            shardErrors.increment();
+        }
+    }
+
+    /**
+     * Returns the metrics of the method, created empty when it has not been called yet
+     */
+    public MethodMetrics getMethod(String method) {
+        MethodMetrics metrics = methods.get(method);
+        if (metrics == null) {
+            //created under the same lock as registerMBeans, so a new method is never missed by both
+            synchronized (this) {
+                metrics = methods.get(method);
+                if (metrics == null) {
+                    metrics = new MethodMetrics(method);
+                    methods.put(method, metrics);
+                    if (jmxName != null) {
+                        register(methodName(jmxName, method), metrics);
+                    }
+                }
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the metrics of every method called so far, sorted by method name
+     */
+    public List<MethodMetrics> getMethods() {
+        List<MethodMetrics> all = new ArrayList<>(methods.values());
+        all.sort(Comparator.comparing(MethodMetrics::getMethod));
+        return all;
+    }
+
+    public LoadMetrics getLoad() {
+        return load;
+    }
+
+    public long getShardErrors() {
+        return shardErrors.sum();
+    }
+
+    /**
+     * Publishes the metrics on the platform MBean server as com.smallworld:type=FetcherMetrics,name=[name] with
+     * one MBean per method and one for the load path. Methods called later are published as they show up.
+     */
+    public synchronized void registerMBeans(String name) {
+        if (jmxName != null) {
+            throw new IllegalStateException("The metrics are already registered as " + jmxName);
+        }
+        jmxName = name;
+        register(objectName("name=" + ObjectName.quote(name) + ",component=load"), load);
+        for (MethodMetrics metrics : methods.values()) {
+            register(methodName(name, metrics.getMethod()), metrics);
+        }
+    }
+
+    public synchronized void unregisterMBeans() {
+        String name = jmxName;
+        if (name == null) {
+            return;
+        }
+        jmxName = null;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (ObjectName objectName : server.queryNames(objectName("name=" + ObjectName.quote(name) + ",*"), null)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not unregister the metrics MBeans of " + name, e);
+        }
+    }
+
+    private static ObjectName methodName(String name, String method) {
+        return objectName("name=" + ObjectName.quote(name) + ",method=" + ObjectName.quote(method));
+    }
+
+    private static ObjectName objectName(String properties) {
+        try {
+            return new ObjectName(DOMAIN + ":type=FetcherMetrics," + properties);
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Invalid metrics name " + properties, e);
+        }
+    }
+
+    private static void register(ObjectName objectName, Object mbean) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(mbean, objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register MBean " + objectName, e);
+        }
+    }
+}
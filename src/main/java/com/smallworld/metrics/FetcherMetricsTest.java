@@ -0,0 +1,99 @@
+package com.smallworld.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.TransactionQueries;
+import com.smallworld.data.Transaction;
+import com.smallworld.io.TransactionStreamReader;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FetcherMetricsTest {
+
+    @Test
+    public void test_LatencyHistogram_ShouldReportPercentilesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(50_000_000, histogram.getValueAtPercentile(50), 50_000_000 * 0.016);
+        assertEquals(99_000_000, histogram.getValueAtPercentile(99), 99_000_000 * 0.016);
+        assertEquals(100_000_000, histogram.getValueAtPercentile(100));
+        assertEquals(50_000_500, histogram.getMean(), 0.001);
+    }
+
+    @Test
+    public void test_InstrumentedQueries_ShouldRecordCallsAndPublishThemOverJmx() throws Exception {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int mtn = 0; mtn < 1000; mtn++) {
+            transactions.add(new Transaction(mtn, mtn, "Client " + mtn % 10, 30, "Client " + mtn % 7, 40, null, true, null));
+        }
+        FetcherMetrics metrics = new FetcherMetrics();
+        TransactionQueries queries = metrics.instrument(new TransactionDataFetcher(transactions));
+        metrics.registerMBeans("test");
+        try {
+            queries.getTotalTransactionAmount();
+            queries.getTotalTransactionAmount();
+            queries.getTransactionsByBeneficiaryName();
+
+            assertEquals(2, metrics.getMethod("getTotalTransactionAmount").getCalls());
+            assertEquals(0, metrics.getMethod("getTotalTransactionAmount").getRowsScanned());
+            assertEquals(1000, metrics.getMethod("getTransactionsByBeneficiaryName").getRowsScanned());
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.smallworld:type=FetcherMetrics,name=\"test\",method=\"getTotalTransactionAmount\"");
+            assertEquals(2L, server.getAttribute(name, "Calls"));
+
+            //failed calls are timed too, and methods first called after registration are published
+            try {
+                queries.getTopTransactionsByAmount(-1);
+                fail("A negative k should be rejected");
+            } catch (IllegalArgumentException e) {
+                assertEquals(1, metrics.getMethod("getTopTransactionsByAmount").getCalls());
+            }
+            assertTrue(server.isRegistered(
+                    new ObjectName("com.smallworld:type=FetcherMetrics,name=\"test\",method=\"getTopTransactionsByAmount\"")));
+
+            //nothing is recorded while disabled
+            metrics.setEnabled(false);
+            queries.getTotalTransactionAmount();
+            assertEquals(2, metrics.getMethod("getTotalTransactionAmount").getCalls());
+        } finally {
+            metrics.unregisterMBeans();
+        }
+        assertTrue(ManagementFactory.getPlatformMBeanServer()
+                .queryNames(new ObjectName("com.smallworld:type=FetcherMetrics,name=\"test\",*"), null).isEmpty());
+    }
+
+    @Test
+    public void test_Reader_ShouldReportLoadsAndParseErrors() throws IOException {
+        FetcherMetrics metrics = new FetcherMetrics();
+        TransactionStreamReader reader = new TransactionStreamReader(new ObjectMapper(), metrics);
+        reader.read(new ByteArrayInputStream("[{\"mtn\": 1, \"amount\": 10.0}]".getBytes(StandardCharsets.UTF_8)),
+                transaction -> {
+                });
+        try {
+            reader.read(new ByteArrayInputStream("[{\"mtn\": ".getBytes(StandardCharsets.UTF_8)), transaction -> {
+            });
+            fail("Truncated input should not parse");
+        } catch (IOException e) {
+            //expected
+        }
+
+        assertEquals(1, metrics.getLoad().getLoads());
+        assertEquals(1, metrics.getLoad().getRowsLoaded());
+        assertEquals(1, metrics.getLoad().getParseErrors());
+    }
+}
@@ -0,0 +1,151 @@
+package com.smallworld.metrics;
+
+import com.smallworld.QueryPlan;
+import com.smallworld.TransactionQueries;
+import com.smallworld.TransactionReport;
+import com.smallworld.data.Transaction;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Decorator that measures every query of the wrapped TransactionQueries: latency, rows scanned and bytes
+ * allocated by the calling thread, reported to a MetricsSink. While the sink is disabled each call costs one
+ * volatile read on top of the delegate; code that never wants metrics simply does not wrap its fetcher.
+ *
+ * Rows scanned are read from getScannedRows before and after the call, so with a delegate shared between
+ * threads they can include scans running concurrently.
+ */
+public class InstrumentedTransactionQueries implements TransactionQueries {
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCountingThreads();
+
+    private final TransactionQueries delegate;
+    private final MetricsSink sink;
+
+    public InstrumentedTransactionQueries(TransactionQueries delegate, MetricsSink sink) {
+        this.delegate = delegate;
+        this.sink = sink;
+    }
+
+    @Override
+    public double getTotalTransactionAmount() {
+        return timed("getTotalTransactionAmount", delegate::getTotalTransactionAmount);
+    }
+
+    @Override
+    public double getTotalTransactionAmountSentBy(String senderFullName) {
+        return timed("getTotalTransactionAmountSentBy", () -> delegate.getTotalTransactionAmountSentBy(senderFullName));
+    }
+
+    @Override
+    public double getMaxTransactionAmount() {
+        return timed("getMaxTransactionAmount", delegate::getMaxTransactionAmount);
+    }
+
+    @Override
+    public long countUniqueClients() {
+        return timed("countUniqueClients", delegate::countUniqueClients);
+    }
+
+    @Override
+    public boolean hasOpenComplianceIssues(String clientFullName) {
+        return timed("hasOpenComplianceIssues", () -> delegate.hasOpenComplianceIssues(clientFullName));
+    }
+
+    @Override
+    public Map<String, Transaction> getTransactionsByBeneficiaryName() {
+        return timed("getTransactionsByBeneficiaryName", delegate::getTransactionsByBeneficiaryName);
+    }
+
+    @Override
+    public Set<Integer> getUnsolvedIssueIds() {
+        return timed("getUnsolvedIssueIds", delegate::getUnsolvedIssueIds);
+    }
+
+    @Override
+    public List<String> getAllSolvedIssueMessages() {
+        return timed("getAllSolvedIssueMessages", delegate::getAllSolvedIssueMessages);
+    }
+
+    @Override
+    public List<Transaction> getTop3TransactionsByAmount() {
+        return timed("getTop3TransactionsByAmount", delegate::getTop3TransactionsByAmount);
+    }
+
+    @Override
+    public List<Transaction> getTopTransactionsByAmount(int k) {
+        return timed("getTopTransactionsByAmount", () -> delegate.getTopTransactionsByAmount(k));
+    }
+
+    @Override
+    public Optional<String> getTopSender() {
+        return timed("getTopSender", delegate::getTopSender);
+    }
+
+    @Override
+    public TransactionReport run(QueryPlan plan) {
+        return timed("run", () -> delegate.run(plan));
+    }
+
+    @Override
+    public long getScannedRows() {
+        return delegate.getScannedRows();
+    }
+
+    @Override
+    public long getDataVersion() {
+        return delegate.getDataVersion();
+    }
+
+    public TransactionQueries getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Runs the query and records it under the method name, also when it throws
+     */
+    private <T> T timed(String method, Supplier<T> query) {
+        if (!sink.isEnabled()) {
+            return query.get();
+        }
+        Probe probe = new Probe();
+        try {
+            return query.get();
+        } finally {
+            probe.stop(method);
+        }
+    }
+
+    private static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCountingThreads() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Readings taken right before a call, turned into a measurement once it returns or throws
+     */
+    private final class Probe {
+        private final long startRows = delegate.getScannedRows();
+        private final long startBytes = allocatedBytes();
+        private final long startNanos = System.nanoTime();
+
+        private void stop(String method) {
+            long elapsedNanos = System.nanoTime() - startNanos;
+            sink.recordCall(method, elapsedNanos, delegate.getScannedRows() - startRows, allocatedBytes() - startBytes);
+        }
+    }
+}
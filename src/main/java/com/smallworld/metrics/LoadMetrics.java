@@ -0,0 +1,56 @@
+package com.smallworld.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Totals of every load run: rows loaded, time spent and parse errors
+ */
+public class LoadMetrics implements LoadMetricsMBean {
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder rowsLoaded = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder parseErrors = new LongAdder();
+
+    void recordLoad(long rows, long elapsedNanos) {
+        loads.increment();
+        rowsLoaded.add(rows);
+        loadNanos.add(elapsedNanos);
+    }
+
+    void recordParseError() {
+        parseErrors.increment();
+    }
+
+    @Override
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    @Override
+    public long getRowsLoaded() {
+        return rowsLoaded.sum();
+    }
+
+    /**
+     * Returns the throughput over all load runs, or 0 when nothing was loaded
+     */
+    @Override
+    public double getRowsPerSecond() {
+        long nanos = loadNanos.sum();
+        return nanos == 0 ? 0.0 : rowsLoaded.sum() * 1_000_000_000.0 / nanos;
+    }
+
+    @Override
+    public long getParseErrors() {
+        return parseErrors.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "loads: " + getLoads() +
+                ", rows: " + getRowsLoaded() +
+                ", rows/sec: " + Math.round(getRowsPerSecond()) +
+                ", parse errors: " + getParseErrors();
+    }
+}
@@ -0,0 +1,15 @@
+package com.smallworld.metrics;
+
+/**
+ * JMX view of the load path metrics
+ */
+public interface LoadMetricsMBean {
+
+    long getLoads();
+
+    long getRowsLoaded();
+
+    double getRowsPerSecond();
+
+    long getParseErrors();
+}
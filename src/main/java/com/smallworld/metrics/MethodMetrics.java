@@ -0,0 +1,84 @@
+package com.smallworld.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call count, latency histogram, rows scanned and allocated bytes of one query method
+ */
+public class MethodMetrics implements MethodMetricsMBean {
+
+    private final String method;
+    private final LongAdder calls = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder rowsScanned = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    public MethodMetrics(String method) {
+        this.method = method;
+    }
+
+    void record(long elapsedNanos, long rows, long bytes) {
+        calls.increment();
+        latency.record(Math.max(0, elapsedNanos));
+        rowsScanned.add(rows);
+        allocatedBytes.add(Math.max(0, bytes));
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public double getMeanLatencyNanos() {
+        return latency.getMean();
+    }
+
+    @Override
+    public long getP50LatencyNanos() {
+        return latency.getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getP99LatencyNanos() {
+        return latency.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getP999LatencyNanos() {
+        return latency.getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getMaxLatencyNanos() {
+        return latency.getMax();
+    }
+
+    @Override
+    public long getRowsScanned() {
+        return rowsScanned.sum();
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    @Override
+    public String toString() {
+        return method + " calls: " + getCalls() +
+                ", mean: " + Math.round(getMeanLatencyNanos()) + " ns" +
+                ", p99: " + getP99LatencyNanos() + " ns" +
+                ", max: " + getMaxLatencyNanos() + " ns" +
+                ", rows scanned: " + getRowsScanned() +
+                ", allocated: " + getAllocatedBytes() + " B";
+    }
+}
@@ -0,0 +1,23 @@
+package com.smallworld.metrics;
+
+/**
+ * JMX view of the metrics of one query method
+ */
+public interface MethodMetricsMBean {
+
+    long getCalls();
+
+    double getMeanLatencyNanos();
+
+    long getP50LatencyNanos();
+
+    long getP99LatencyNanos();
+
+    long getP999LatencyNanos();
+
+    long getMaxLatencyNanos();
+
+    long getRowsScanned();
+
+    long getAllocatedBytes();
+}
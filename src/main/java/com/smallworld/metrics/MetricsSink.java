@@ -0,0 +1,40 @@
+package com.smallworld.metrics;
+
+/**
+ * Receives the measurements of instrumented queries and loads. Implement it to forward them to any metrics
+ * system; FetcherMetrics keeps them in memory and exposes them over JMX.
+ */
+public interface MetricsSink {
+
+    /**
+     * Sink that records nothing, instrumented code skips its measurements entirely when given it
+     */
+    MetricsSink NONE = new MetricsSink() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    /**
+     * Returns whether measurements should be taken at all, checked before every instrumented call
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    default void recordCall(String method, long elapsedNanos, long rowsScanned, long allocatedBytes) {
+    }
+
+    default void recordLoad(long rows, long elapsedNanos) {
+    }
+
+    default void recordParseError(Exception error) {
+    }
+
+    /**
+     * Called when a shard server fails to accept a connection and goes on serving
+     */
+    default void recordShardError(Exception error) {
+    }
+}
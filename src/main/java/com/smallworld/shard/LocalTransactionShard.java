@@ -0,0 +1,107 @@
+package com.smallworld.shard;
+
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.Transaction;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shard backed by a TransactionDataFetcher in this JVM. Calls are serialized on the shard, so several shards
+ * are queried in parallel but a single one never runs two calls at once.
+ */
+public class LocalTransactionShard implements TransactionShard {
+
+    private final TransactionDataFetcher fetcher;
+
+    public LocalTransactionShard() {
+        this(new TransactionDataFetcher());
+    }
+
+    public LocalTransactionShard(TransactionDataFetcher fetcher) {
+        this.fetcher = fetcher;
+    }
+
+    @Override
+    public synchronized void appendBatch(List<Transaction> transactions) {
+        fetcher.appendBatch(transactions);
+    }
+
+    @Override
+    public synchronized boolean markIssueSolved(int issueId) {
+        return fetcher.markIssueSolved(issueId);
+    }
+
+    @Override
+    public synchronized ShardSummary getSummary() {
+        return new ShardSummary(fetcher.getTransactionCount(), fetcher.getTotalTransactionAmount(),
+                fetcher.getMaxTransactionAmount());
+    }
+
+    @Override
+    public synchronized double getTotalTransactionAmountSentBy(String senderFullName) {
+        return fetcher.getTotalTransactionAmountSentBy(senderFullName);
+    }
+
+    @Override
+    public synchronized boolean hasOpenComplianceIssues(String clientFullName) {
+        return fetcher.hasOpenComplianceIssues(clientFullName);
+    }
+
+    @Override
+    public synchronized List<String> getClientNames() {
+        return fetcher.getClientNames();
+    }
+
+    @Override
+    public synchronized Map<String, Double> getSentTotalsBySender() {
+        return fetcher.getSentTotalsBySender();
+    }
+
+    @Override
+    public synchronized Map<String, Transaction> getTransactionsByBeneficiaryName() {
+        return fetcher.getTransactionsByBeneficiaryName();
+    }
+
+    /**
+     * Returns the k transactions with the highest amount sorted by amount descending, ties ordered by mtn. The
+     * fetcher keeps the earliest of equal amounts, so it is asked for more rows until every transaction tied
+     * with the k-th one is among them.
+     */
+    @Override
+    public synchronized List<Transaction> getTopTransactionsByAmount(int k) {
+        List<Transaction> top = fetcher.getTopTransactionsByAmount(k);
+        int fetched = k;
+        while (top.size() == fetched && fetched > 0 && fetched < fetcher.getTransactionCount()
+                && top.get(fetched - 1).getAmount() == top.get(k - 1).getAmount()) {
+            fetched = (int) Math.min(2L * fetched, fetcher.getTransactionCount());
+            top = fetcher.getTopTransactionsByAmount(fetched);
+        }
+        if (fetched == k) {
+            return top;
+        }
+        List<Transaction> sorted = new ArrayList<>(top);
+        sorted.sort(ShardedTransactionDataFetcher.BY_AMOUNT_DESCENDING);
+        return new ArrayList<>(sorted.subList(0, k));
+    }
+
+    /**
+     * Returns a copy of the open issue ids, the fetcher's live view must not escape the shard's lock
+     */
+    @Override
+    public synchronized Set<Integer> getUnsolvedIssueIds() {
+        return new LinkedHashSet<>(fetcher.getUnsolvedIssueIds());
+    }
+
+    @Override
+    public synchronized Map<Integer, String> getSolvedIssueMessagesById() {
+        return fetcher.getSolvedIssueMessagesById();
+    }
+
+    @Override
+    public void close() {
+    }
+}
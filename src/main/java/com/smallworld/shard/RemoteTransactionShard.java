@@ -0,0 +1,145 @@
+package com.smallworld.shard;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.smallworld.data.Transaction;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Client of a shard served by ShardServer over a single socket connection. Calls are serialized on the
+ * connection, each one a request/response round trip. A transport failure can leave a frame half written or
+ * half read, so it closes the connection and every later call fails fast with the same cause.
+ */
+public class RemoteTransactionShard implements TransactionShard {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Socket socket;
+    private final DataInputStream input;
+    private final DataOutputStream output;
+    //the failure that broke the connection, null while it is usable; guarded by this
+    private IOException failure;
+
+    public RemoteTransactionShard(String host, int port) throws IOException {
+        this.socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        this.input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    @Override
+    public void appendBatch(List<Transaction> transactions) {
+        ObjectNode request = request(ShardProtocol.APPEND);
+        request.set("transactions", objectMapper.valueToTree(transactions));
+        call(request, new TypeReference<Boolean>() {
+        });
+    }
+
+    @Override
+    public boolean markIssueSolved(int issueId) {
+        return call(request(ShardProtocol.MARK_ISSUE_SOLVED).put("issueId", issueId), new TypeReference<Boolean>() {
+        });
+    }
+
+    @Override
+    public ShardSummary getSummary() {
+        return call(request(ShardProtocol.SUMMARY), new TypeReference<ShardSummary>() {
+        });
+    }
+
+    @Override
+    public double getTotalTransactionAmountSentBy(String senderFullName) {
+        return call(request(ShardProtocol.SENT_BY).put("name", senderFullName), new TypeReference<Double>() {
+        });
+    }
+
+    @Override
+    public boolean hasOpenComplianceIssues(String clientFullName) {
+        return call(request(ShardProtocol.HAS_OPEN_ISSUES).put("name", clientFullName), new TypeReference<Boolean>() {
+        });
+    }
+
+    @Override
+    public List<String> getClientNames() {
+        return call(request(ShardProtocol.CLIENT_NAMES), new TypeReference<List<String>>() {
+        });
+    }
+
+    @Override
+    public Map<String, Double> getSentTotalsBySender() {
+        return call(request(ShardProtocol.SENT_TOTALS), new TypeReference<Map<String, Double>>() {
+        });
+    }
+
+    @Override
+    public Map<String, Transaction> getTransactionsByBeneficiaryName() {
+        return call(request(ShardProtocol.BY_BENEFICIARY), new TypeReference<Map<String, Transaction>>() {
+        });
+    }
+
+    @Override
+    public List<Transaction> getTopTransactionsByAmount(int k) {
+        return call(request(ShardProtocol.TOP).put("k", k), new TypeReference<List<Transaction>>() {
+        });
+    }
+
+    @Override
+    public Set<Integer> getUnsolvedIssueIds() {
+        return call(request(ShardProtocol.UNSOLVED_ISSUE_IDS), new TypeReference<Set<Integer>>() {
+        });
+    }
+
+    @Override
+    public Map<Integer, String> getSolvedIssueMessagesById() {
+        return call(request(ShardProtocol.SOLVED_MESSAGES), new TypeReference<Map<Integer, String>>() {
+        });
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ObjectNode request(String op) {
+        return objectMapper.createObjectNode().put("op", op);
+    }
+
+    private synchronized <T> T call(ObjectNode request, TypeReference<T> resultType) {
+        if (failure != null) {
+            throw new UncheckedIOException("Shard connection was broken by an earlier call", failure);
+        }
+        JsonNode response;
+        try {
+            ShardProtocol.writeFrame(output, objectMapper, request);
+            response = ShardProtocol.readFrame(input, objectMapper);
+        } catch (IOException e) {
+            failure = e;
+            try {
+                socket.close();
+            } catch (IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw new UncheckedIOException("Shard call " + request.get("op").asText() + " failed", e);
+        }
+        if (response.has("error")) {
+            throw new IllegalStateException("Shard call " + request.get("op").asText() + " failed: "
+                    + response.get("error").asText());
+        }
+        return objectMapper.convertValue(response.get("result"), resultType);
+    }
+}
@@ -0,0 +1,51 @@
+package com.smallworld.shard;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Wire format between RemoteTransactionShard and ShardServer: every request and response is a JSON object
+ * preceded by its length as a 4 byte big-endian int. Requests name the shard method in "op" and carry its
+ * argument, responses carry either "result" or "error".
+ */
+final class ShardProtocol {
+
+    static final String APPEND = "append";
+    static final String MARK_ISSUE_SOLVED = "markIssueSolved";
+    static final String SUMMARY = "summary";
+    static final String SENT_BY = "sentBy";
+    static final String HAS_OPEN_ISSUES = "hasOpenIssues";
+    static final String CLIENT_NAMES = "clientNames";
+    static final String SENT_TOTALS = "sentTotals";
+    static final String BY_BENEFICIARY = "byBeneficiary";
+    static final String TOP = "top";
+    static final String UNSOLVED_ISSUE_IDS = "unsolvedIssueIds";
+    static final String SOLVED_MESSAGES = "solvedMessages";
+
+    //a frame above this size is taken as a corrupt length rather than allocated
+    private static final int MAX_FRAME_BYTES = 512 * 1024 * 1024;
+
+    private ShardProtocol() {
+    }
+
+    static void writeFrame(DataOutputStream output, ObjectMapper objectMapper, JsonNode message) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(message);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+        output.flush();
+    }
+
+    static JsonNode readFrame(DataInputStream input, ObjectMapper objectMapper) throws IOException {
+        int length = input.readInt();
+        if (length < 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return objectMapper.readTree(bytes);
+    }
+}
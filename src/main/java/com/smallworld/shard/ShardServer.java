@@ -0,0 +1,159 @@
+package com.smallworld.shard;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.smallworld.data.Transaction;
+import com.smallworld.metrics.MetricsSink;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.List;
+
+/**
+ * Serves a shard to RemoteTransactionShard clients on a loopback port, one thread per connection. Run it as
+ * its own process with the port as argument, 0 picking a free one, to host a shard outside the coordinator's JVM.
+ */
+public class ShardServer implements AutoCloseable {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TransactionShard shard;
+    private final MetricsSink sink;
+    private final ServerSocket serverSocket;
+    private final Thread acceptor;
+
+    private ShardServer(TransactionShard shard, MetricsSink sink, ServerSocket serverSocket) {
+        this.shard = shard;
+        this.sink = sink;
+        this.serverSocket = serverSocket;
+        this.acceptor = new Thread(this::accept, "shard-server-" + serverSocket.getLocalPort());
+        acceptor.setDaemon(true);
+    }
+
+    /**
+     * Starts serving the shard on the loopback interface, on a free port when the given one is 0
+     */
+    public static ShardServer start(TransactionShard shard, int port) throws IOException {
+        return start(shard, port, MetricsSink.NONE);
+    }
+
+    /**
+     * Starts serving the shard, reporting connections that could not be accepted to the sink
+     */
+    public static ShardServer start(TransactionShard shard, int port, MetricsSink sink) throws IOException {
+        ShardServer server = new ShardServer(shard, sink,
+                new ServerSocket(port, 50, InetAddress.getLoopbackAddress()));
+        server.acceptor.start();
+        return server;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        ShardServer server = start(new LocalTransactionShard(), port);
+        System.out.println("Shard listening on port " + server.getPort());
+        server.acceptor.join();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stops accepting connections. Connections already open are served until their client closes them.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread connection = new Thread(() -> serve(socket), acceptor.getName() + "-connection");
+                connection.setDaemon(true);
+                connection.start();
+            } catch (SocketException e) {
+                //closed while waiting for a connection
+            } catch (IOException e) {
+                sink.recordShardError(e);
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (true) {
+                JsonNode request;
+                try {
+                    request = ShardProtocol.readFrame(input, objectMapper);
+                } catch (EOFException e) {
+                    return;
+                }
+                ShardProtocol.writeFrame(output, objectMapper, handle(request));
+            }
+        } catch (IOException e) {
+            //the client went away mid-call, nothing is left to answer
+        }
+    }
+
+    private ObjectNode handle(JsonNode request) {
+        ObjectNode response = objectMapper.createObjectNode();
+        try {
+            response.set("result", objectMapper.valueToTree(dispatch(request)));
+        } catch (RuntimeException e) {
+            response.put("error", e.toString());
+        }
+        return response;
+    }
+
+    private Object dispatch(JsonNode request) {
+        String op = request.path("op").asText();
+        switch (op) {
+            case ShardProtocol.APPEND:
+                List<Transaction> transactions = objectMapper.convertValue(request.get("transactions"),
+                        new TypeReference<List<Transaction>>() {
+                        });
+                shard.appendBatch(transactions);
+                return true;
+            case ShardProtocol.MARK_ISSUE_SOLVED:
+                return shard.markIssueSolved(request.get("issueId").asInt());
+            case ShardProtocol.SUMMARY:
+                return shard.getSummary();
+            case ShardProtocol.SENT_BY:
+                return shard.getTotalTransactionAmountSentBy(textOrNull(request.get("name")));
+            case ShardProtocol.HAS_OPEN_ISSUES:
+                return shard.hasOpenComplianceIssues(textOrNull(request.get("name")));
+            case ShardProtocol.CLIENT_NAMES:
+                return shard.getClientNames();
+            case ShardProtocol.SENT_TOTALS:
+                return shard.getSentTotalsBySender();
+            case ShardProtocol.BY_BENEFICIARY:
+                return shard.getTransactionsByBeneficiaryName();
+            case ShardProtocol.TOP:
+                return shard.getTopTransactionsByAmount(request.get("k").asInt());
+            case ShardProtocol.UNSOLVED_ISSUE_IDS:
+                return shard.getUnsolvedIssueIds();
+            case ShardProtocol.SOLVED_MESSAGES:
+                return shard.getSolvedIssueMessagesById();
+            default:
+                throw new IllegalArgumentException("Unknown shard operation " + op);
+        }
+    }
+
+    private static String textOrNull(JsonNode node) {
+        return node == null || node.isNull() ? null : node.asText();
+    }
+}
@@ -0,0 +1,38 @@
+package com.smallworld.shard;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The scalar partial aggregates of a shard
+ */
+public class ShardSummary {
+
+    private final int transactionCount;
+    private final double totalAmount;
+    private final double maxAmount;
+
+    @JsonCreator
+    public ShardSummary(@JsonProperty("transactionCount") int transactionCount,
+                        @JsonProperty("totalAmount") double totalAmount,
+                        @JsonProperty("maxAmount") double maxAmount) {
+        this.transactionCount = transactionCount;
+        this.totalAmount = totalAmount;
+        this.maxAmount = maxAmount;
+    }
+
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+
+    public double getTotalAmount() {
+        return totalAmount;
+    }
+
+    /**
+     * Returns the highest amount of the shard, meaningless when it holds no transactions
+     */
+    public double getMaxAmount() {
+        return maxAmount;
+    }
+}
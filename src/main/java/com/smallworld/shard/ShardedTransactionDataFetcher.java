@@ -0,0 +1,304 @@
+package com.smallworld.shard;
+
+import com.smallworld.TransactionQueries;
+import com.smallworld.data.Transaction;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Coordinator of a sharded deployment. Transactions are hash-partitioned by mtn, so every row of a transaction
+ * and therefore every issue of it lands on the same shard. Queries are scattered to all shards and their
+ * partial aggregates gathered and merged: sums are added, maxima compared, per-shard top k lists merged,
+ * client names unioned and per-sender totals summed before the top sender is picked.
+ *
+ * Answers match a single TransactionDataFetcher over the same rows, up to the rounding of the sums and ties,
+ * which shards cannot order by arrival: equal amounts are ordered by mtn, equal sender totals by name, issue
+ * ids and solved messages come in issue id order, and a beneficiary with transactions on several shards keeps
+ * the one with the highest mtn.
+ */
+public class ShardedTransactionDataFetcher implements TransactionQueries, AutoCloseable {
+
+    static final Comparator<Transaction> BY_AMOUNT_DESCENDING =
+            Comparator.comparingDouble(Transaction::getAmount).reversed().thenComparingInt(Transaction::getMtn);
+    //runs every shard call on the calling thread, one shard after the other
+    private static final Executor SEQUENTIAL = Runnable::run;
+
+    private final List<TransactionShard> shards;
+    private final Executor executor;
+    //bumped after every append and solved issue that goes through the coordinator has reached its shards
+    private final AtomicLong dataVersion = new AtomicLong();
+
+    public ShardedTransactionDataFetcher(List<? extends TransactionShard> shards) {
+        this(shards, SEQUENTIAL);
+    }
+
+    /**
+     * Creates a coordinator that calls the shards of a scatter concurrently on the executor. Remote shards
+     * block on their socket, so give them a pool with a thread per shard rather than the common pool.
+     */
+    public ShardedTransactionDataFetcher(List<? extends TransactionShard> shards, Executor executor) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = new ArrayList<>(shards);
+        this.executor = executor;
+    }
+
+    /**
+     * Returns a coordinator over the given number of shards that all live in this JVM
+     */
+    public static ShardedTransactionDataFetcher inProcess(int shardCount) {
+        List<TransactionShard> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new LocalTransactionShard());
+        }
+        return new ShardedTransactionDataFetcher(shards);
+    }
+
+    /**
+     * Returns the index of the shard that owns the transaction
+     */
+    public int shardOf(int mtn) {
+        //mixing the bits so mtns that share a stride still spread over every shard
+        int hash = mtn * 0x9E3779B1;
+        return Math.floorMod(hash ^ (hash >>> 16), shards.size());
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public void append(Transaction transaction) {
+        appendBatch(Collections.singletonList(transaction));
+    }
+
+    /**
+     * Routes every row of the batch to its shard, keeping the order of the rows within each shard, and sends
+     * each shard its part in one call
+     */
+    public void appendBatch(Collection<Transaction> transactions) {
+        List<List<Transaction>> batches = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            batches.add(new ArrayList<>());
+        }
+        for (Transaction transaction : transactions) {
+            batches.get(shardOf(transaction.getMtn())).add(transaction);
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            List<Transaction> batch = batches.get(i);
+            if (!batch.isEmpty()) {
+                TransactionShard shard = shards.get(i);
+                futures.add(CompletableFuture.runAsync(() -> shard.appendBatch(batch), executor));
+            }
+        }
+        try {
+            join(futures);
+        } finally {
+            //also after a failed call, some shards may have taken their part
+            dataVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * Marks an open issue as solved on the shard that holds it. Returns false when the issue is unknown or
+     * already solved.
+     */
+    public boolean markIssueSolved(int issueId) {
+        boolean solved = false;
+        for (boolean shardSolved : gather(shard -> shard.markIssueSolved(issueId))) {
+            solved |= shardSolved;
+        }
+        if (solved) {
+            dataVersion.incrementAndGet();
+        }
+        return solved;
+    }
+
+    @Override
+    public double getTotalTransactionAmount() {
+        double total = 0.0;
+        for (ShardSummary summary : gather(TransactionShard::getSummary)) {
+            total += summary.getTotalAmount();
+        }
+        return total;
+    }
+
+    @Override
+    public double getTotalTransactionAmountSentBy(String senderFullName) {
+        double total = 0.0;
+        for (double sent : gather(shard -> shard.getTotalTransactionAmountSentBy(senderFullName))) {
+            total += sent;
+        }
+        return total;
+    }
+
+    @Override
+    public double getMaxTransactionAmount() {
+        double max = 0.0;
+        boolean found = false;
+        for (ShardSummary summary : gather(TransactionShard::getSummary)) {
+            //an empty shard has no max to contribute
+            if (summary.getTransactionCount() > 0) {
+                max = found ? Math.max(max, summary.getMaxAmount()) : summary.getMaxAmount();
+                found = true;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Counts the number of unique clients that sent or received a transaction. A client can appear on every
+     * shard, so every client name of every shard is gathered in full and unioned: the cost grows with the number
+     * of clients. ApproximateTransactionStats fed from the same rows answers in bounded memory.
+     */
+    @Override
+    public long countUniqueClients() {
+        Set<String> clients = new HashSet<>();
+        for (List<String> names : gather(TransactionShard::getClientNames)) {
+            clients.addAll(names);
+        }
+        return clients.size();
+    }
+
+    @Override
+    public boolean hasOpenComplianceIssues(String clientFullName) {
+        for (boolean open : gather(shard -> shard.hasOpenComplianceIssues(clientFullName))) {
+            if (open) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Map<String, Transaction> getTransactionsByBeneficiaryName() {
+        Map<String, Transaction> transactionsByBeneficiaryName = new HashMap<>();
+        for (Map<String, Transaction> shardTransactions : gather(TransactionShard::getTransactionsByBeneficiaryName)) {
+            for (Map.Entry<String, Transaction> entry : shardTransactions.entrySet()) {
+                transactionsByBeneficiaryName.merge(entry.getKey(), entry.getValue(),
+                        (kept, other) -> other.getMtn() > kept.getMtn() ? other : kept);
+            }
+        }
+        return transactionsByBeneficiaryName;
+    }
+
+    /**
+     * Returns the identifiers of all open compliance issues in ascending order, as a read-only snapshot
+     */
+    @Override
+    public Set<Integer> getUnsolvedIssueIds() {
+        Set<Integer> unsolvedIssueIds = new TreeSet<>();
+        for (Set<Integer> shardIssueIds : gather(TransactionShard::getUnsolvedIssueIds)) {
+            unsolvedIssueIds.addAll(shardIssueIds);
+        }
+        return Collections.unmodifiableSet(unsolvedIssueIds);
+    }
+
+    /**
+     * Returns a list of all solved issue messages ordered by issue id
+     */
+    @Override
+    public List<String> getAllSolvedIssueMessages() {
+        Map<Integer, String> messagesById = new TreeMap<>();
+        for (Map<Integer, String> shardMessages : gather(TransactionShard::getSolvedIssueMessagesById)) {
+            messagesById.putAll(shardMessages);
+        }
+        return new ArrayList<>(messagesById.values());
+    }
+
+    @Override
+    public List<Transaction> getTop3TransactionsByAmount() {
+        return getTopTransactionsByAmount(3);
+    }
+
+    /**
+     * Returns the k transactions with the highest amount sorted by amount descending, ties ordered by mtn. Each
+     * shard returns its own top k, which together always contain the global top k.
+     */
+    @Override
+    public List<Transaction> getTopTransactionsByAmount(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative but was " + k);
+        }
+        List<Transaction> candidates = new ArrayList<>();
+        for (List<Transaction> shardTop : gather(shard -> shard.getTopTransactionsByAmount(k))) {
+            candidates.addAll(shardTop);
+        }
+        candidates.sort(BY_AMOUNT_DESCENDING);
+        return new ArrayList<>(candidates.subList(0, Math.min(k, candidates.size())));
+    }
+
+    /**
+     * Returns the senderFullName of the sender with the most total sent amount across all shards. On equal
+     * totals the sender that comes first alphabetically wins. A sender's total can be split over every shard,
+     * so every sender total of every shard is gathered in full and summed before the top one is picked.
+     */
+    @Override
+    public Optional<String> getTopSender() {
+        Map<String, Double> sentTotals = new HashMap<>();
+        for (Map<String, Double> shardTotals : gather(TransactionShard::getSentTotalsBySender)) {
+            for (Map.Entry<String, Double> entry : shardTotals.entrySet()) {
+                sentTotals.merge(entry.getKey(), entry.getValue(), Double::sum);
+            }
+        }
+        String topSender = null;
+        double topAmount = 0.0;
+        for (Map.Entry<String, Double> entry : sentTotals.entrySet()) {
+            double amount = entry.getValue();
+            if (topSender == null || amount > topAmount
+                    || (amount == topAmount && entry.getKey().compareTo(topSender) < 0)) {
+                topSender = entry.getKey();
+                topAmount = amount;
+            }
+        }
+        return Optional.ofNullable(topSender);
+    }
+
+    @Override
+    public long getDataVersion() {
+        return dataVersion.get();
+    }
+
+    /**
+     * Closes every shard
+     */
+    @Override
+    public void close() {
+        for (TransactionShard shard : shards) {
+            shard.close();
+        }
+    }
+
+    /**
+     * Calls every shard, concurrently when the executor allows it, and returns the results in shard order
+     */
+    private <T> List<T> gather(Function<TransactionShard, T> call) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.size());
+        for (TransactionShard shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> call.apply(shard), executor));
+        }
+        return join(futures);
+    }
+
+    private static <T> List<T> join(List<CompletableFuture<T>> futures) {
+        List<T> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<T> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                //rethrowing what the shard threw rather than the wrapper
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,159 @@
+package com.smallworld.shard;
+
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.Transaction;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class ShardedTransactionDataFetcherTest {
+
+    //distinct amounts and one beneficiary per transaction, so no answer depends on tie-breaking
+    private static List<Transaction> transactions() {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int mtn = 0; mtn < 500; mtn++) {
+            Integer issueId = mtn % 3 == 0 ? mtn : null;
+            String message = issueId == null ? null : "Issue " + mtn;
+            transactions.add(new Transaction(mtn, mtn * 1.5 + 0.25, "Sender " + mtn % 17, 30,
+                    "Beneficiary " + mtn, 40, issueId, mtn % 2 == 0, message));
+            if (mtn % 9 == 0) {
+                //a second issue row for the same transaction, which must land on the same shard
+                transactions.add(new Transaction(mtn, mtn * 1.5 + 0.25, "Sender " + mtn % 17, 30,
+                        "Beneficiary " + mtn, 40, 10_000 + mtn, false, "Follow-up " + mtn));
+            }
+        }
+        return transactions;
+    }
+
+    private static void assertSameAnswers(TransactionDataFetcher expected, ShardedTransactionDataFetcher actual) {
+        assertEquals(expected.getTotalTransactionAmount(), actual.getTotalTransactionAmount(), 1e-6);
+        assertEquals(expected.getTotalTransactionAmountSentBy("Sender 3"), actual.getTotalTransactionAmountSentBy("Sender 3"), 1e-6);
+        assertEquals(expected.getMaxTransactionAmount(), actual.getMaxTransactionAmount(), 0.0);
+        assertEquals(expected.countUniqueClients(), actual.countUniqueClients());
+        assertEquals(expected.hasOpenComplianceIssues("Beneficiary 9"), actual.hasOpenComplianceIssues("Beneficiary 9"));
+        assertEquals(expected.hasOpenComplianceIssues("Beneficiary 4"), actual.hasOpenComplianceIssues("Beneficiary 4"));
+        assertEquals(new TreeMap<>(expected.getTransactionsByBeneficiaryName()).toString(),
+                new TreeMap<>(actual.getTransactionsByBeneficiaryName()).toString());
+        assertEquals(new TreeSet<>(expected.getUnsolvedIssueIds()), actual.getUnsolvedIssueIds());
+        List<String> solvedMessages = new ArrayList<>(expected.getAllSolvedIssueMessages());
+        Collections.sort(solvedMessages);
+        List<String> actualSolvedMessages = new ArrayList<>(actual.getAllSolvedIssueMessages());
+        Collections.sort(actualSolvedMessages);
+        assertEquals(solvedMessages, actualSolvedMessages);
+        assertEquals(expected.getTop3TransactionsByAmount().toString(), actual.getTop3TransactionsByAmount().toString());
+        assertEquals(expected.getTopTransactionsByAmount(50).toString(), actual.getTopTransactionsByAmount(50).toString());
+        assertEquals(expected.getTopSender(), actual.getTopSender());
+    }
+
+    @Test
+    public void test_InProcessShards_ShouldMergeToTheSingleFetcherAnswers() {
+        List<Transaction> transactions = transactions();
+        TransactionDataFetcher expected = new TransactionDataFetcher(transactions);
+        try (ShardedTransactionDataFetcher sharded = ShardedTransactionDataFetcher.inProcess(4)) {
+            sharded.appendBatch(transactions);
+            assertSameAnswers(expected, sharded);
+
+            assertTrue(sharded.markIssueSolved(3));
+            assertFalse(sharded.markIssueSolved(3));
+            expected.markIssueSolved(3);
+            assertSameAnswers(expected, sharded);
+        }
+    }
+
+    @Test
+    public void test_LoopbackShards_ShouldMergeToTheSingleFetcherAnswers() throws IOException {
+        List<Transaction> transactions = transactions();
+        TransactionDataFetcher expected = new TransactionDataFetcher(transactions);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        List<ShardServer> servers = new ArrayList<>();
+        List<TransactionShard> shards = new ArrayList<>();
+        try {
+            for (int i = 0; i < 3; i++) {
+                ShardServer server = ShardServer.start(new LocalTransactionShard(), 0);
+                servers.add(server);
+                shards.add(new RemoteTransactionShard("localhost", server.getPort()));
+            }
+            try (ShardedTransactionDataFetcher sharded = new ShardedTransactionDataFetcher(shards, executor)) {
+                sharded.appendBatch(transactions);
+                assertSameAnswers(expected, sharded);
+                try {
+                    sharded.getTopTransactionsByAmount(-1);
+                    fail("A negative k should be rejected");
+                } catch (IllegalArgumentException e) {
+                    //expected
+                }
+            }
+        } finally {
+            for (ShardServer server : servers) {
+                server.close();
+            }
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void test_TopTransactions_ShouldOrderEqualAmountsByMtnAcrossShards() {
+        try (ShardedTransactionDataFetcher sharded = ShardedTransactionDataFetcher.inProcess(2)) {
+            //arriving highest mtn first, so keeping the first seen of equal amounts would pick the wrong ones
+            for (int mtn = 19; mtn >= 0; mtn--) {
+                sharded.append(new Transaction(mtn, mtn == 7 ? 20.0 : 10.0, "Sender " + mtn, 30,
+                        "Beneficiary " + mtn, 40, null, true, null));
+            }
+            List<Integer> mtns = new ArrayList<>();
+            for (Transaction transaction : sharded.getTopTransactionsByAmount(4)) {
+                mtns.add(transaction.getMtn());
+            }
+            assertEquals(Arrays.asList(7, 0, 1, 2), mtns);
+
+            //nothing changed, so the version stays put
+            long version = sharded.getDataVersion();
+            assertFalse(sharded.markIssueSolved(42));
+            assertEquals(version, sharded.getDataVersion());
+        }
+    }
+
+    @Test
+    public void test_RemoteShard_ShouldFailFastOnceAFrameWasCutOff() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread server = new Thread(() -> {
+                try (Socket socket = serverSocket.accept()) {
+                    DataInputStream input = new DataInputStream(socket.getInputStream());
+                    input.readFully(new byte[input.readInt()]);
+                    //announces a 100 byte response and hangs up after 3 of them
+                    DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+                    output.writeInt(100);
+                    output.write(new byte[3]);
+                    output.flush();
+                } catch (IOException e) {
+                    //the test fails on the client side
+                }
+            });
+            server.start();
+            RemoteTransactionShard shard = new RemoteTransactionShard("localhost", serverSocket.getLocalPort());
+            try {
+                shard.getSummary();
+                fail("A cut off response should fail the call");
+            } catch (UncheckedIOException e) {
+                assertTrue(e.getMessage().contains("summary"));
+            }
+            try {
+                shard.getClientNames();
+                fail("A broken connection should not be used again");
+            } catch (UncheckedIOException e) {
+                assertEquals("Shard connection was broken by an earlier call", e.getMessage());
+            }
+            shard.close();
+        }
+    }
+}
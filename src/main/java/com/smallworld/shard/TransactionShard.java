@@ -0,0 +1,56 @@
+package com.smallworld.shard;
+
+import com.smallworld.data.Transaction;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One partition of a sharded deployment. A shard holds every row of the transactions routed to it and answers
+ * partial aggregates over them, which ShardedTransactionDataFetcher merges into the answer for all shards.
+ * Implementations must be safe to call from several threads. Remote shards report transport failures as
+ * UncheckedIOException.
+ */
+public interface TransactionShard extends AutoCloseable {
+
+    /**
+     * Adds rows of the transaction/issue join, with the same semantics as TransactionDataFetcher.append
+     */
+    void appendBatch(List<Transaction> transactions);
+
+    /**
+     * Marks an open issue as solved. Returns false when the issue is unknown to this shard or already solved.
+     */
+    boolean markIssueSolved(int issueId);
+
+    /**
+     * Returns the transaction count, total and max of the shard in one call
+     */
+    ShardSummary getSummary();
+
+    double getTotalTransactionAmountSentBy(String senderFullName);
+
+    boolean hasOpenComplianceIssues(String clientFullName);
+
+    List<String> getClientNames();
+
+    Map<String, Double> getSentTotalsBySender();
+
+    Map<String, Transaction> getTransactionsByBeneficiaryName();
+
+    /**
+     * Returns the k transactions of the shard with the highest amount sorted by amount descending
+     */
+    List<Transaction> getTopTransactionsByAmount(int k);
+
+    Set<Integer> getUnsolvedIssueIds();
+
+    Map<Integer, String> getSolvedIssueMessagesById();
+
+    /**
+     * Releases the shard: drops a remote connection, local shards have nothing to release
+     */
+    @Override
+    void close();
+}
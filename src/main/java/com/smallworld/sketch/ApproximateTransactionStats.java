@@ -0,0 +1,98 @@
+package com.smallworld.sketch;
+
+import com.smallworld.data.Transaction;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Opt-in approximate mode for countUniqueClients and getTopSender. It keeps only a HyperLogLog and a
+ * Space-Saving summary, so memory stays fixed however many clients and rows are streamed through it, e.g.
+ * with TransactionStreamReader. Use TransactionDataFetcher when exact answers are needed.
+ *
+ * Rows of the same transaction (one per compliance issue) are expected to follow each other, as they do in the
+ * exported files; only the first row of each run of equal mtns counts towards the sent amounts. Remembering
+ * every mtn would defeat the fixed memory, so input that interleaves the rows of a transaction with other rows
+ * counts it more than once. Feed each file or shard its own instance and merge them, or use a feed that keeps
+ * those runs together: DirectoryLoader never splits a run between batches, and ShardedTransactionDataFetcher
+ * keeps the rows of a shard in input order.
+ *
+ * Space-Saving only takes non-negative weights, so refunds and other negative amounts are left out of the sent
+ * amounts and added up in getRefundedAmount instead. A sender's estimate can therefore be too high by its own
+ * refunds, at most getRefundedAmount in total, on top of the sketch's error bound.
+ */
+public class ApproximateTransactionStats implements Consumer<Transaction> {
+
+    private final HyperLogLog clients;
+    private final SpaceSaving senders;
+    //sum of the absolute negative amounts kept out of the sender summary
+    private double refundedAmount;
+    private boolean hasLastMtn;
+    private int lastMtn;
+
+    /**
+     * @param clientRelativeError relative standard error of the unique client count, e.g. 0.01
+     * @param senderErrorBound    fraction of the total amount a sender estimate can be off by, e.g. 0.001
+     */
+    public ApproximateTransactionStats(double clientRelativeError, double senderErrorBound) {
+        this(HyperLogLog.withRelativeError(clientRelativeError), SpaceSaving.withErrorBound(senderErrorBound));
+    }
+
+    public ApproximateTransactionStats(HyperLogLog clients, SpaceSaving senders) {
+        this.clients = clients;
+        this.senders = senders;
+    }
+
+    @Override
+    public void accept(Transaction transaction) {
+        clients.add(transaction.getSenderFullName());
+        clients.add(transaction.getBeneficiaryFullName());
+        if (!hasLastMtn || transaction.getMtn() != lastMtn) {
+            if (transaction.getAmount() < 0) {
+                refundedAmount -= transaction.getAmount();
+            } else {
+                senders.add(transaction.getSenderFullName(), transaction.getAmount());
+            }
+            hasLastMtn = true;
+            lastMtn = transaction.getMtn();
+        }
+    }
+
+    /**
+     * Returns the estimated number of unique clients that sent or received a transaction
+     */
+    public long countUniqueClients() {
+        return clients.estimate();
+    }
+
+    /**
+     * Returns the sender with the highest estimated total sent amount
+     */
+    public Optional<String> getTopSender() {
+        return senders.getTop(1).stream().findFirst().map(SpaceSaving.HeavyHitter::getKey);
+    }
+
+    /**
+     * Folds the sketches of another instance into this one, e.g. one per input file or shard
+     */
+    public void merge(ApproximateTransactionStats other) {
+        clients.merge(other.clients);
+        senders.merge(other.senders);
+        refundedAmount += other.refundedAmount;
+    }
+
+    /**
+     * Returns the sum of the absolute negative amounts that were not counted towards any sender
+     */
+    public double getRefundedAmount() {
+        return refundedAmount;
+    }
+
+    public HyperLogLog getClients() {
+        return clients;
+    }
+
+    public SpaceSaving getSenders() {
+        return senders;
+    }
+}
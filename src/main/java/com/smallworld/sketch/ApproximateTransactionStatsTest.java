@@ -0,0 +1,106 @@
+package com.smallworld.sketch;
+
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.Transaction;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ApproximateTransactionStatsTest {
+
+    @Test
+    public void test_HyperLogLog_ShouldStayWithinErrorBound() {
+        HyperLogLog sketch = HyperLogLog.withRelativeError(0.01);
+        int distinct = 200_000;
+        for (int i = 0; i < distinct; i++) {
+            sketch.add("Client " + i);
+            //repeats must not change the estimate
+            sketch.add("Client " + (i / 2));
+        }
+
+        //four standard errors keep the test deterministic in practice
+        assertEquals(distinct, sketch.estimate(), distinct * 4 * sketch.getRelativeError());
+    }
+
+    @Test
+    public void test_HyperLogLog_MergeShouldMatchSingleSketch() {
+        HyperLogLog whole = new HyperLogLog(12);
+        HyperLogLog left = new HyperLogLog(12);
+        HyperLogLog right = new HyperLogLog(12);
+        for (int i = 0; i < 50_000; i++) {
+            whole.add("Client " + i);
+            (i % 2 == 0 ? left : right).add("Client " + i);
+        }
+        left.merge(right);
+
+        assertEquals(whole.estimate(), left.estimate());
+    }
+
+    @Test
+    public void test_SpaceSaving_ShouldFindHeavySendersWithinErrorBound() {
+        Random random = new Random(7);
+        SpaceSaving left = SpaceSaving.withErrorBound(0.01);
+        SpaceSaving right = SpaceSaving.withErrorBound(0.01);
+        Map<String, Double> exact = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            //a few heavy senders hidden in a long tail of small ones
+            String sender = i % 10 < 3 ? "Heavy " + (i % 3) : "Client " + random.nextInt(20_000);
+            double amount = 1 + random.nextInt(100);
+            exact.merge(sender, amount, Double::sum);
+            (i % 2 == 0 ? left : right).add(sender, amount);
+        }
+        left.merge(right);
+
+        List<SpaceSaving.HeavyHitter> top = left.getTop(3);
+        assertEquals(3, top.size());
+        for (SpaceSaving.HeavyHitter hitter : top) {
+            assertTrue(hitter.getKey().startsWith("Heavy"));
+            double real = exact.get(hitter.getKey());
+            assertTrue(hitter.getWeight() >= real);
+            assertTrue(hitter.getWeight() - real <= left.getMaxError());
+        }
+    }
+
+    @Test
+    public void test_ApproximateStats_ShouldMatchExactFetcherOnSkewedData() {
+        Random random = new Random(11);
+        List<Transaction> rows = new ArrayList<>();
+        for (int mtn = 0; mtn < 30_000; mtn++) {
+            String sender = mtn % 4 == 0 ? "Big Sender" : "Client " + random.nextInt(5_000);
+            String beneficiary = "Client " + random.nextInt(5_000);
+            double amount = 1 + random.nextInt(500);
+            //issue fan-out: the same transaction on consecutive rows must be counted once
+            int issueRows = mtn % 5 == 0 ? 3 : 1;
+            for (int issue = 0; issue < issueRows; issue++) {
+                rows.add(new Transaction(mtn, amount, sender, 30, beneficiary, 40, null, true, null));
+            }
+        }
+        ApproximateTransactionStats stats = new ApproximateTransactionStats(0.02, 0.001);
+        rows.forEach(stats);
+        TransactionDataFetcher fetcher = new TransactionDataFetcher(rows);
+
+        assertEquals(fetcher.getTopSender(), stats.getTopSender());
+        assertEquals(fetcher.getTotalTransactionAmountSentBy("Big Sender"),
+                stats.getSenders().estimate("Big Sender"), stats.getSenders().getMaxError());
+        long exactClients = fetcher.countUniqueClients();
+        assertEquals(exactClients, stats.countUniqueClients(),
+                exactClients * 4 * stats.getClients().getRelativeError());
+    }
+
+    @Test
+    public void test_ApproximateStats_ShouldKeepRefundsOutOfTheSenderSummary() {
+        ApproximateTransactionStats stats = new ApproximateTransactionStats(0.01, 0.01);
+        stats.accept(new Transaction(1, 100, "Tom Shelby", 22, "Arthur Shelby", 60, null, true, null));
+        stats.accept(new Transaction(2, 80, "Aunt Polly", 34, "Arthur Shelby", 60, null, true, null));
+        stats.accept(new Transaction(3, -30, "Tom Shelby", 22, "Aunt Polly", 34, null, true, null));
+        //a second issue row of the refund is not counted twice
+        stats.accept(new Transaction(3, -30, "Tom Shelby", 22, "Aunt Polly", 34, 7, false, "Refund"));
+
+        assertEquals(Optional.of("Tom Shelby"), stats.getTopSender());
+        assertEquals(30, stats.getRefundedAmount(), 0.0);
+        assertEquals(100, stats.getSenders().estimate("Tom Shelby"), 0.0);
+        assertEquals(3, stats.countUniqueClients());
+    }
+}
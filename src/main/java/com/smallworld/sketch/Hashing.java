@@ -0,0 +1,31 @@
+package com.smallworld.sketch;
+
+/**
+ * 64-bit string hash for the sketches. String.hashCode only has 32 bits, which collides far too often once
+ * there are tens of millions of distinct names.
+ */
+final class Hashing {
+
+    private Hashing() {
+    }
+
+    /**
+     * FNV-1a over the chars of the string followed by the murmur3 finalizer to spread the bits
+     */
+    static long hash64(String value) {
+        if (value == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,226 @@
+package com.smallworld.sketch;
+
+import java.util.*;
+
+/**
+ * Weighted Space-Saving heavy-hitter summary. It keeps at most capacity counters, so memory is fixed, and the
+ * estimated weight of a key overestimates the real one by at most getTotalWeight() / capacity. Any key whose
+ * weight is above that bound is guaranteed to be tracked. Summaries can be merged, e.g. to combine shards.
+ */
+public class SpaceSaving {
+
+    private final int capacity;
+    private final Map<String, Counter> counters;
+    //min-heap on count, so the counter to evict is always at the root
+    private final Counter[] heap;
+    private int size;
+    private double totalWeight;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive but was " + capacity);
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+        this.heap = new Counter[capacity];
+    }
+
+    /**
+     * Creates a summary whose estimates overestimate by at most the given fraction of the total weight
+     */
+    public static SpaceSaving withErrorBound(double fraction) {
+        if (fraction <= 0 || fraction >= 1) {
+            throw new IllegalArgumentException("Error bound must be between 0 and 1 but was " + fraction);
+        }
+        return new SpaceSaving((int) Math.ceil(1 / fraction));
+    }
+
+    public void add(String key, double weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight must not be negative but was " + weight);
+        }
+        totalWeight += weight;
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            counter.count += weight;
+            siftDown(counter.heapIndex);
+        } else if (size < capacity) {
+            counter = new Counter(key, weight, 0.0);
+            counters.put(key, counter);
+            heap[size] = counter;
+            counter.heapIndex = size++;
+            siftUp(counter.heapIndex);
+        } else {
+            //the new key takes over the smallest counter and inherits its count as possible error
+            Counter evicted = heap[0];
+            counters.remove(evicted.key);
+            evicted.key = key;
+            evicted.error = evicted.count;
+            evicted.count += weight;
+            counters.put(key, evicted);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Returns the estimated weight of the key, an upper bound of its real weight
+     */
+    public double estimate(String key) {
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            return counter.count;
+        }
+        return size < capacity ? 0.0 : heap[0].count;
+    }
+
+    /**
+     * Returns the tracked keys with the highest estimated weights, best first, ties broken by key
+     */
+    public List<HeavyHitter> getTop(int k) {
+        List<HeavyHitter> hitters = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            hitters.add(new HeavyHitter(heap[i].key, heap[i].count, heap[i].error));
+        }
+        hitters.sort(Comparator.comparingDouble(HeavyHitter::getWeight).reversed()
+                .thenComparing(HeavyHitter::getKey, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return hitters.subList(0, Math.min(k, hitters.size()));
+    }
+
+    /**
+     * Folds another summary into this one. A key missing from a full summary is charged that summary's smallest
+     * count, which keeps estimates upper bounds and the error bound at total weight / capacity.
+     */
+    public void merge(SpaceSaving other) {
+        double missingHere = size < capacity ? 0.0 : heap[0].count;
+        double missingThere = other.size < other.capacity ? 0.0 : other.heap[0].count;
+        Map<String, Counter> merged = new HashMap<>((size + other.size) * 2);
+        for (Counter counter : counters.values()) {
+            Counter theirs = other.counters.get(counter.key);
+            double count = counter.count + (theirs != null ? theirs.count : missingThere);
+            double error = counter.error + (theirs != null ? theirs.error : missingThere);
+            merged.put(counter.key, new Counter(counter.key, count, error));
+        }
+        for (Counter theirs : other.counters.values()) {
+            if (!merged.containsKey(theirs.key)) {
+                merged.put(theirs.key, new Counter(theirs.key, theirs.count + missingHere, theirs.error + missingHere));
+            }
+        }
+        List<Counter> kept = new ArrayList<>(merged.values());
+        kept.sort(Comparator.comparingDouble((Counter counter) -> counter.count).reversed());
+        counters.clear();
+        size = 0;
+        for (Counter counter : kept.subList(0, Math.min(capacity, kept.size()))) {
+            counters.put(counter.key, counter);
+            heap[size] = counter;
+            counter.heapIndex = size++;
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+        totalWeight += other.totalWeight;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public double getTotalWeight() {
+        return totalWeight;
+    }
+
+    /**
+     * Returns the largest amount by which an estimate can exceed the real weight
+     */
+    public double getMaxError() {
+        return totalWeight / capacity;
+    }
+
+    private void siftUp(int index) {
+        Counter counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(counter, index);
+    }
+
+    private void siftDown(int index) {
+        Counter counter = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (counter.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(counter, index);
+    }
+
+    private void place(Counter counter, int index) {
+        heap[index] = counter;
+        counter.heapIndex = index;
+    }
+
+    private static class Counter {
+        private String key;
+        private double count;
+        private double error;
+        private int heapIndex;
+
+        private Counter(String key, double count, double error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    /**
+     * A tracked key with its estimated weight and the most that estimate can be above the real weight
+     */
+    public static class HeavyHitter {
+        private final String key;
+        private final double weight;
+        private final double error;
+
+        HeavyHitter(String key, double weight, double error) {
+            this.key = key;
+            this.weight = weight;
+            this.error = error;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public double getWeight() {
+            return weight;
+        }
+
+        public double getError() {
+            return error;
+        }
+
+        /**
+         * Returns the weight the key is guaranteed to have at least
+         */
+        public double getGuaranteedWeight() {
+            return weight - error;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + weight + " (+/-" + error + ")";
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.smallworld.store;
+
+import java.util.Arrays;
+
+/**
+ * Secondary index over a TransactionStore keyed by client code. For every client it keeps the rows the client
+ * sent and received (in row order), the total amount sent and the number of open issues on its transactions,
+ * so per-client questions are answered without scanning the store. It is kept up to date as rows and issues
+ * are added to the store.
+ *
+ * Sent totals follow the block order of TransactionStore.BLOCK_SIZE: the amounts of the current block are
+ * summed apart and folded into the sealed total when the client shows up in a later block.
+ */
+public class ClientIndex {
+
+    private static final int[] NO_ROWS = new int[0];
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[][] sentRows = new int[0][];
+    private int[] sentCount = new int[0];
+    private int[][] receivedRows = new int[0][];
+    private int[] receivedCount = new int[0];
+    private double[] sealedSent = new double[0];
+    private double[] blockSent = new double[0];
+    private int[] lastBlock = new int[0];
+    private int[] openIssueCount = new int[0];
+    private int clientCount;
+
+    /**
+     * Indexes a row that was just added to the store
+     */
+    public void addRow(TransactionStore store, int row) {
+        addPostings(store, row);
+        int senderId = store.getSenderId(row);
+        moveToBlock(senderId, TransactionStore.blockOf(row));
+        blockSent[senderId] += store.getAmount(row);
+    }
+
+    /**
+     * Adds the row to the sent and received posting lists only, for callers that merge sent totals per block
+     */
+    public void addPostings(TransactionStore store, int row) {
+        ensureCapacity(store.getClients().size());
+        int senderId = store.getSenderId(row);
+        int beneficiaryId = store.getBeneficiaryId(row);
+        sentRows[senderId] = append(sentRows[senderId], sentCount[senderId]++, row);
+        receivedRows[beneficiaryId] = append(receivedRows[beneficiaryId], receivedCount[beneficiaryId]++, row);
+    }
+
+    /**
+     * Merges the per-sender sums of a block that has not been indexed yet, computed by a scan in row order.
+     * Blocks must be merged in order.
+     */
+    public void mergeSentBlock(int block, int[] senderIds, double[] sums, int count) {
+        for (int i = 0; i < count; i++) {
+            moveToBlock(senderIds[i], block);
+            blockSent[senderIds[i]] = sums[i];
+        }
+    }
+
+    private void moveToBlock(int senderId, int block) {
+        if (lastBlock[senderId] != block) {
+            sealedSent[senderId] += blockSent[senderId];
+            blockSent[senderId] = 0.0;
+            lastBlock[senderId] = block;
+        }
+    }
+
+    /**
+     * Counts a new open issue on the row for both its sender and its beneficiary
+     */
+    public void addOpenIssue(TransactionStore store, int row) {
+        updateOpenIssues(store, row, 1);
+    }
+
+    /**
+     * Discounts an issue of the row that has been solved
+     */
+    public void removeOpenIssue(TransactionStore store, int row) {
+        updateOpenIssues(store, row, -1);
+    }
+
+    private void updateOpenIssues(TransactionStore store, int row, int delta) {
+        int senderId = store.getSenderId(row);
+        int beneficiaryId = store.getBeneficiaryId(row);
+        openIssueCount[senderId] += delta;
+        if (beneficiaryId != senderId) {
+            openIssueCount[beneficiaryId] += delta;
+        }
+    }
+
+    /**
+     * Makes room for the given number of client codes
+     */
+    public void ensureCapacity(int clients) {
+        if (clients > sealedSent.length) {
+            int oldCapacity = sealedSent.length;
+            int capacity = Math.max(clients, Math.max(INITIAL_CAPACITY, oldCapacity * 2));
+            sentRows = Arrays.copyOf(sentRows, capacity);
+            receivedRows = Arrays.copyOf(receivedRows, capacity);
+            Arrays.fill(sentRows, oldCapacity, capacity, NO_ROWS);
+            Arrays.fill(receivedRows, oldCapacity, capacity, NO_ROWS);
+            sentCount = Arrays.copyOf(sentCount, capacity);
+            receivedCount = Arrays.copyOf(receivedCount, capacity);
+            sealedSent = Arrays.copyOf(sealedSent, capacity);
+            blockSent = Arrays.copyOf(blockSent, capacity);
+            lastBlock = Arrays.copyOf(lastBlock, capacity);
+            openIssueCount = Arrays.copyOf(openIssueCount, capacity);
+        }
+        clientCount = Math.max(clientCount, clients);
+    }
+
+    private static int[] append(int[] rows, int count, int row) {
+        if (count == rows.length) {
+            rows = Arrays.copyOf(rows, Math.max(4, count * 2));
+        }
+        rows[count] = row;
+        return rows;
+    }
+
+    public double getSentTotal(int clientId) {
+        return sealedSent[clientId] + blockSent[clientId];
+    }
+
+    /**
+     * Returns whether the client sent at least one transaction
+     */
+    public boolean isSender(int clientId) {
+        return sentCount[clientId] > 0;
+    }
+
+    public int getOpenIssueCount(int clientId) {
+        return openIssueCount[clientId];
+    }
+
+    /**
+     * Returns the rows sent by the client in ascending order
+     */
+    public int[] getSentRows(int clientId) {
+        return Arrays.copyOf(sentRows[clientId], sentCount[clientId]);
+    }
+
+    /**
+     * Returns the rows received by the client in ascending order
+     */
+    public int[] getReceivedRows(int clientId) {
+        return Arrays.copyOf(receivedRows[clientId], receivedCount[clientId]);
+    }
+
+    /**
+     * Returns the rows where the client is sender or beneficiary in ascending order, merging both posting lists
+     */
+    public int[] getClientRows(int clientId) {
+        int[] sent = sentRows[clientId];
+        int[] received = receivedRows[clientId];
+        int sentSize = sentCount[clientId];
+        int receivedSize = receivedCount[clientId];
+        int[] rows = new int[sentSize + receivedSize];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < sentSize || j < receivedSize) {
+            int next;
+            if (j == receivedSize || (i < sentSize && sent[i] <= received[j])) {
+                next = sent[i++];
+            } else {
+                next = received[j++];
+            }
+            //a transaction sent to oneself is in both lists
+            if (count == 0 || rows[count - 1] != next) {
+                rows[count++] = next;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    public int clientCount() {
+        return clientCount;
+    }
+}
@@ -0,0 +1,85 @@
+package com.smallworld.store;
+
+/**
+ * Open addressing int to int hash map with linear probing, used to index rows by mtn and issue id without
+ * boxing every key. Values must be non-negative.
+ */
+public class IntIntMap {
+
+    private static final int MISSING = -1;
+
+    private int[] keys;
+    //value + 1 per slot, 0 marks an empty slot
+    private int[] values;
+    private int size;
+    private int mask;
+
+    public IntIntMap() {
+        this(16);
+    }
+
+    public IntIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Returns the value stored for the key, or -1 when there is none
+     */
+    public int get(int key) {
+        for (int slot = slotOf(key); ; slot = (slot + 1) & mask) {
+            if (values[slot] == 0) {
+                return MISSING;
+            }
+            if (keys[slot] == key) {
+                return values[slot] - 1;
+            }
+        }
+    }
+
+    public void put(int key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value " + value);
+        }
+        for (int slot = slotOf(key); ; slot = (slot + 1) & mask) {
+            if (values[slot] == 0) {
+                keys[slot] = key;
+                values[slot] = value + 1;
+                if (++size * 2 > keys.length) {
+                    grow();
+                }
+                return;
+            }
+            if (keys[slot] == key) {
+                values[slot] = value + 1;
+                return;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int slotOf(int key) {
+        //spreading the bits so sequential keys do not form long probe chains
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        mask = keys.length - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != 0) {
+                put(oldKeys[i], oldValues[i] - 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.smallworld.store;
+
+import java.util.*;
+
+/**
+ * Read side of the compliance issues of a TransactionStore. Issues are stored once per issue id with their
+ * solved bit and interned message code, and this index keeps the views compliance officers poll ready to
+ * return: the open issue ids as a live set backed by the solved bits, and the solved messages as a list kept in
+ * issue order as issues are added and solved. Solving an issue is O(1) plus the shift of the messages after it;
+ * per-client open counts live in ClientIndex.
+ */
+public class IssueIndex {
+
+    private final TransactionStore store;
+    private final Set<Integer> unsolvedIssueIds = Collections.unmodifiableSet(new UnsolvedIssueIds());
+    private int openCount;
+    //solved issues in ascending order, parallel to solvedMessages
+    private int[] solvedIssues = new int[16];
+    private ArrayList<String> solvedMessages = new ArrayList<>();
+    //last returned list, null after a change; while one is out an insert before its end copies solvedMessages
+    private List<String> snapshot;
+    private boolean shared;
+
+    public IssueIndex(TransactionStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Indexes an issue that was just added to the store
+     */
+    public void addIssue(int issue) {
+        if (store.isIssueSolved(issue)) {
+            addSolved(issue);
+        } else {
+            openCount++;
+        }
+    }
+
+    /**
+     * Records that an open issue of the store was just solved
+     */
+    public void solveIssue(int issue) {
+        openCount--;
+        addSolved(issue);
+    }
+
+    private void addSolved(int issue) {
+        int size = solvedMessages.size();
+        //issues arrive in order, so the new one usually goes last
+        int position = size == 0 || solvedIssues[size - 1] < issue
+                ? size : -Arrays.binarySearch(solvedIssues, 0, size, issue) - 1;
+        if (size == solvedIssues.length) {
+            solvedIssues = Arrays.copyOf(solvedIssues, size * 2);
+        }
+        System.arraycopy(solvedIssues, position, solvedIssues, position + 1, size - position);
+        solvedIssues[position] = issue;
+        if (position < size && shared) {
+            solvedMessages = new ArrayList<>(solvedMessages);
+            shared = false;
+        }
+        solvedMessages.add(position, store.getIssueMessage(issue));
+        snapshot = null;
+    }
+
+    /**
+     * Returns the ids of the open issues, as a read-only view that follows later updates
+     */
+    public Set<Integer> getUnsolvedIssueIds() {
+        return unsolvedIssueIds;
+    }
+
+    public int getOpenCount() {
+        return openCount;
+    }
+
+    /**
+     * Returns the messages of the solved issues in issue order. The list is a read-only snapshot that later
+     * changes do not touch. It is shared between calls until an issue is added or solved, and shares its storage
+     * with the index until an issue is solved out of order.
+     */
+    public List<String> getSolvedIssueMessages() {
+        if (snapshot == null) {
+            snapshot = new SolvedMessages(solvedMessages, solvedMessages.size());
+            shared = true;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Set of the open issue ids, iterated in issue order straight off the solved bits of the store
+     */
+    private class UnsolvedIssueIds extends AbstractSet<Integer> {
+
+        @Override
+        public int size() {
+            return openCount;
+        }
+
+        @Override
+        public boolean contains(Object value) {
+            if (!(value instanceof Integer)) {
+                return false;
+            }
+            int issue = store.findIssue((Integer) value);
+            return issue != TransactionStore.NO_ISSUE && !store.isIssueSolved(issue);
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return new Iterator<Integer>() {
+                private int next = store.nextOpenIssue(0);
+
+                @Override
+                public boolean hasNext() {
+                    return next != TransactionStore.NO_ISSUE;
+                }
+
+                @Override
+                public Integer next() {
+                    if (next == TransactionStore.NO_ISSUE) {
+                        throw new NoSuchElementException();
+                    }
+                    int issue = next;
+                    next = store.nextOpenIssue(issue + 1);
+                    return store.getIssueId(issue);
+                }
+            };
+        }
+    }
+
+    /**
+     * The first size solved messages of a list that only grows at its end while this view is alive
+     */
+    private static final class SolvedMessages extends AbstractList<String> implements RandomAccess {
+
+        private final List<String> messages;
+        private final int size;
+
+        private SolvedMessages(List<String> messages, int size) {
+            this.messages = messages;
+            this.size = size;
+        }
+
+        @Override
+        public String get(int index) {
+            Objects.checkIndex(index, size);
+            return messages.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
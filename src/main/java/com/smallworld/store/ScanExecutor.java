@@ -0,0 +1,196 @@
+package com.smallworld.store;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Runs a scan over a range of rows (or issues) as fixed-size chunks, either one after the other or on a
+ * ForkJoinPool. Chunk boundaries are multiples of TransactionStore.BLOCK_SIZE in both modes and the partial
+ * results come back in chunk order, so callers that fold them left to right get the same answer, down to
+ * the last bit of a floating point sum, whichever mode ran the scan.
+ */
+public class ScanExecutor {
+
+    /**
+     * Computes the partial result of the half-open range [from, to)
+     */
+    @FunctionalInterface
+    public interface ChunkFunction<P> {
+        P apply(int from, int to);
+    }
+
+    /**
+     * Adds the elements of the half-open range [from, to) to an accumulator
+     */
+    @FunctionalInterface
+    public interface ChunkAccumulator<A> {
+        void accept(A accumulator, int from, int to);
+    }
+
+    //chunk runs handed to each thread when reducing, more than one per thread so uneven runs even out
+    private static final int RUNS_PER_THREAD = 4;
+
+    private static final ScanExecutor SEQUENTIAL = new ScanExecutor(null, Integer.MAX_VALUE);
+
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+
+    private ScanExecutor(ForkJoinPool pool, int parallelThreshold) {
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public static ScanExecutor sequential() {
+        return SEQUENTIAL;
+    }
+
+    /**
+     * Scans on the given pool when the range holds at least parallelThreshold elements, sequentially otherwise
+     */
+    public static ScanExecutor parallel(ForkJoinPool pool, int parallelThreshold) {
+        if (parallelThreshold < 1) {
+            throw new IllegalArgumentException("Parallel threshold must be positive but was " + parallelThreshold);
+        }
+        return new ScanExecutor(pool, parallelThreshold);
+    }
+
+    /**
+     * Scans on the common pool for ranges of at least parallelThreshold elements
+     */
+    public static ScanExecutor parallel(int parallelThreshold) {
+        return parallel(ForkJoinPool.commonPool(), parallelThreshold);
+    }
+
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Applies the function to every chunk of [0, size) and returns the partial results in chunk order
+     */
+    @SuppressWarnings("unchecked")
+    public <P> List<P> mapChunks(int size, ChunkFunction<P> function) {
+        int chunks = (size + TransactionStore.BLOCK_SIZE - 1) / TransactionStore.BLOCK_SIZE;
+        Object[] partials = new Object[chunks];
+        if (pool == null || size < parallelThreshold || chunks == 1) {
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                partials[chunk] = applyToChunk(function, chunk, size);
+            }
+        } else {
+            pool.invoke(new ChunkTask<>(function, partials, 0, chunks, size));
+        }
+        return (List<P>) Arrays.asList(partials);
+    }
+
+    /**
+     * Adds every chunk of [0, size) to accumulators and combines them into one. Sequentially a single accumulator
+     * sees every chunk; in parallel every thread fills its own accumulator over runs of chunks and the combiner
+     * merges neighbouring ones, always the earlier run as its first argument. Only a handful of accumulators per
+     * thread exist at any time, however many chunks the range has, so bounded accumulators such as a top k heap
+     * keep the scan in O(k * parallelism) memory. The combiner must be associative.
+     */
+    public <A> A reduceChunks(int size, Supplier<A> supplier, ChunkAccumulator<A> accumulator,
+                              BinaryOperator<A> combiner) {
+        int chunks = (size + TransactionStore.BLOCK_SIZE - 1) / TransactionStore.BLOCK_SIZE;
+        if (pool == null || size < parallelThreshold || chunks == 1) {
+            A result = supplier.get();
+            accumulateChunks(accumulator, result, 0, chunks, size);
+            return result;
+        }
+        int chunksPerRun = Math.max(1, chunks / (pool.getParallelism() * RUNS_PER_THREAD));
+        return pool.invoke(new ReduceTask<>(supplier, accumulator, combiner, 0, chunks, chunksPerRun, size));
+    }
+
+    private static <A> void accumulateChunks(ChunkAccumulator<A> accumulator, A result, int firstChunk, int endChunk,
+                                             int size) {
+        for (int chunk = firstChunk; chunk < endChunk; chunk++) {
+            int from = chunk * TransactionStore.BLOCK_SIZE;
+            accumulator.accept(result, from, Math.min(size, from + TransactionStore.BLOCK_SIZE));
+        }
+    }
+
+    private static <P> P applyToChunk(ChunkFunction<P> function, int chunk, int size) {
+        int from = chunk * TransactionStore.BLOCK_SIZE;
+        return function.apply(from, Math.min(size, from + TransactionStore.BLOCK_SIZE));
+    }
+
+    /**
+     * Splits the chunk range in halves until a single chunk is left, each task writing into its own slot
+     */
+    private static final class ChunkTask<P> extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ChunkFunction<P> function;
+        private final Object[] partials;
+        private final int firstChunk;
+        private final int endChunk;
+        private final int size;
+
+        private ChunkTask(ChunkFunction<P> function, Object[] partials, int firstChunk, int endChunk, int size) {
+            this.function = function;
+            this.partials = partials;
+            this.firstChunk = firstChunk;
+            this.endChunk = endChunk;
+            this.size = size;
+        }
+
+        @Override
+        protected void compute() {
+            if (endChunk - firstChunk == 1) {
+                partials[firstChunk] = applyToChunk(function, firstChunk, size);
+                return;
+            }
+            int middle = (firstChunk + endChunk) >>> 1;
+            invokeAll(new ChunkTask<>(function, partials, firstChunk, middle, size),
+                    new ChunkTask<>(function, partials, middle, endChunk, size));
+        }
+    }
+
+    /**
+     * Splits the chunk range in halves until a run is short enough for one accumulator, then combines the halves
+     */
+    private static final class ReduceTask<A> extends RecursiveTask<A> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Supplier<A> supplier;
+        private final ChunkAccumulator<A> accumulator;
+        private final BinaryOperator<A> combiner;
+        private final int firstChunk;
+        private final int endChunk;
+        private final int chunksPerRun;
+        private final int size;
+
+        private ReduceTask(Supplier<A> supplier, ChunkAccumulator<A> accumulator, BinaryOperator<A> combiner,
+                           int firstChunk, int endChunk, int chunksPerRun, int size) {
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+            this.firstChunk = firstChunk;
+            this.endChunk = endChunk;
+            this.chunksPerRun = chunksPerRun;
+            this.size = size;
+        }
+
+        @Override
+        protected A compute() {
+            if (endChunk - firstChunk <= chunksPerRun) {
+                A result = supplier.get();
+                accumulateChunks(accumulator, result, firstChunk, endChunk, size);
+                return result;
+            }
+            int middle = (firstChunk + endChunk) >>> 1;
+            ReduceTask<A> left = new ReduceTask<>(supplier, accumulator, combiner, firstChunk, middle, chunksPerRun, size);
+            ReduceTask<A> right = new ReduceTask<>(supplier, accumulator, combiner, middle, endChunk, chunksPerRun, size);
+            right.fork();
+            A leftResult = left.compute();
+            return combiner.apply(leftResult, right.join());
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.smallworld.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of a TransactionStore, so a restart can skip parsing JSON. The file holds a fixed header and
+ * then every column back to back, little endian:
+ * <pre>
+ * header   magic, version, row count, issue count, client count, message count,
+ *          client bytes, message bytes, CRC32 of everything after the header
+ * rows     mtn, amount, sender id, sender age, beneficiary id, beneficiary age, event time
+ * issues   issue id, issue row, message id, solved bits as longs
+ * strings  clients then messages, each as a byte length (-1 for null) followed by its UTF-8 bytes
+ * </pre>
+ * Restoring maps each section with FileChannel.map, in windows of at most 1 GB, and bulk copies it into the
+ * primitive columns. Lookups and issue chains are derived data and are rebuilt instead of stored.
+ *
+ * A snapshot is written to a temporary file next to the target and moved over it once complete, so a crash or a
+ * full disk during a dump leaves the previous snapshot intact.
+ */
+public final class StoreSnapshot {
+
+    private static final int MAGIC = 0x53575453;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 6 * Integer.BYTES + 3 * Long.BYTES;
+    private static final int NULL_STRING = -1;
+    private static final int BUFFER_SIZE = 1 << 20;
+    //largest range mapped at once, FileChannel.map cannot map 2 GB or more; a multiple of every column width
+    private static final long MAP_WINDOW = 1L << 30;
+
+    private StoreSnapshot() {
+    }
+
+    public static void write(TransactionStore store, Path path) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            writeTo(store, temporary);
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void writeTo(TransactionStore store, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            int rows = store.size();
+            for (int row = 0; row < rows; row++) {
+                out.putInt(store.getMtn(row));
+            }
+            for (int row = 0; row < rows; row++) {
+                out.putDouble(store.getAmount(row));
+            }
+            for (int row = 0; row < rows; row++) {
+                out.putInt(store.getSenderId(row));
+            }
+            for (int row = 0; row < rows; row++) {
+                out.putInt(store.getSenderAge(row));
+            }
+            for (int row = 0; row < rows; row++) {
+                out.putInt(store.getBeneficiaryId(row));
+            }
+            for (int row = 0; row < rows; row++) {
+                out.putInt(store.getBeneficiaryAge(row));
+            }
+            for (int row = 0; row < rows; row++) {
+                out.putLong(store.getEventTime(row));
+            }
+
+            int issues = store.issueCount();
+            BitSet solved = new BitSet(issues);
+            for (int issue = 0; issue < issues; issue++) {
+                out.putInt(store.getIssueId(issue));
+                solved.set(issue, store.isIssueSolved(issue));
+            }
+            for (int issue = 0; issue < issues; issue++) {
+                out.putInt(store.getIssueRow(issue));
+            }
+            for (int issue = 0; issue < issues; issue++) {
+                out.putInt(store.getIssueMessageId(issue));
+            }
+            long[] solvedWords = solved.toLongArray();
+            for (int word = 0; word < wordsFor(issues); word++) {
+                out.putLong(word < solvedWords.length ? solvedWords[word] : 0L);
+            }
+
+            long clientBytes = out.putStrings(store.getClients());
+            long messageBytes = out.putStrings(store.getMessages());
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(issues)
+                    .putInt(store.getClients().size()).putInt(store.getMessages().size())
+                    .putLong(clientBytes).putLong(messageBytes).putLong(out.crc.getValue());
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            //the data must be on disk before the move makes it the snapshot
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Reads a snapshot into a new store. Throws IOException when the file is not a snapshot, is truncated or
+     * fails its checksum.
+     */
+    public static TransactionStore read(Path path) throws IOException {
+        return read(path, MAP_WINDOW);
+    }
+
+    static TransactionStore read(Path path, long mapWindow) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a transaction snapshot, the file is too short: " + path);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a transaction snapshot: " + path);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + " in " + path);
+            }
+            int rows = header.getInt();
+            int issues = header.getInt();
+            int clientCount = header.getInt();
+            int messageCount = header.getInt();
+            long clientBytes = header.getLong();
+            long messageBytes = header.getLong();
+            long checksum = header.getLong();
+            //the header is not checksummed, so its counts are checked before anything is sized by them
+            if (rows < 0 || issues < 0 || clientCount < 0 || messageCount < 0 || clientBytes < 0 || messageBytes < 0
+                    || clientBytes < (long) clientCount * Integer.BYTES
+                    || messageBytes < (long) messageCount * Integer.BYTES) {
+                throw new IOException("Corrupt snapshot header in " + path);
+            }
+            long expectedSize = HEADER_SIZE + (long) rows * (5 * Integer.BYTES + Double.BYTES + Long.BYTES)
+                    + (long) issues * 3 * Integer.BYTES + (long) wordsFor(issues) * Long.BYTES
+                    + clientBytes + messageBytes;
+            if (channel.size() != expectedSize) {
+                throw new IOException("Snapshot " + path + " should be " + expectedSize + " bytes but is "
+                        + channel.size());
+            }
+
+            Input in = new Input(channel, mapWindow);
+            int[] mtn = in.ints(rows);
+            double[] amount = in.doubles(rows);
+            int[] senderId = in.ints(rows);
+            int[] senderAge = in.ints(rows);
+            int[] beneficiaryId = in.ints(rows);
+            int[] beneficiaryAge = in.ints(rows);
+            long[] eventTime = in.longs(rows);
+            int[] issueId = in.ints(issues);
+            int[] issueRow = in.ints(issues);
+            int[] issueMessageId = in.ints(issues);
+            BitSet solved = BitSet.valueOf(in.longs(wordsFor(issues)));
+
+            TransactionStore store = new TransactionStore();
+            in.strings(clientBytes, clientCount, store.getClients());
+            in.strings(messageBytes, messageCount, store.getMessages());
+            if (in.crc.getValue() != checksum) {
+                throw new IOException("Checksum mismatch in snapshot " + path);
+            }
+            store.restore(rows, mtn, amount, senderId, senderAge, beneficiaryId, beneficiaryAge, eventTime,
+                    issues, issueId, issueRow, issueMessageId, solved);
+            return store;
+        }
+    }
+
+    private static int wordsFor(int bits) {
+        return (bits + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    /**
+     * Buffered sequential writer of the payload, checksumming every byte it writes
+     */
+    private static class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32 crc = new CRC32();
+        private long position = HEADER_SIZE;
+
+        private Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void putInt(int value) throws IOException {
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        private void putLong(long value) throws IOException {
+            ensureRemaining(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        private void putDouble(double value) throws IOException {
+            ensureRemaining(Double.BYTES);
+            buffer.putDouble(value);
+        }
+
+        /**
+         * Writes every entry of the dictionary in code order. Returns the number of bytes written.
+         */
+        private long putStrings(StringDictionary dictionary) throws IOException {
+            long bytesWritten = 0;
+            for (int code = 0; code < dictionary.size(); code++) {
+                String value = dictionary.decode(code);
+                if (value == null) {
+                    putInt(NULL_STRING);
+                    bytesWritten += Integer.BYTES;
+                    continue;
+                }
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                putInt(bytes.length);
+                for (int offset = 0; offset < bytes.length; ) {
+                    ensureRemaining(1);
+                    int length = Math.min(buffer.remaining(), bytes.length - offset);
+                    buffer.put(bytes, offset, length);
+                    offset += length;
+                }
+                bytesWritten += Integer.BYTES + bytes.length;
+            }
+            return bytesWritten;
+        }
+
+        private void ensureRemaining(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Maps the payload window by window, checksumming every window it hands out. Columns are copied straight out
+     * of their windows, strings are read across window boundaries.
+     */
+    private static class Input {
+        private final FileChannel channel;
+        private final long mapWindow;
+        private final CRC32 crc = new CRC32();
+        private long position = HEADER_SIZE;
+        //the window strings are currently read from, and where their section ends
+        private ByteBuffer window = ByteBuffer.allocate(0);
+        private long sectionEnd;
+        private final byte[] intBytes = new byte[Integer.BYTES];
+
+        private Input(FileChannel channel, long mapWindow) {
+            this.channel = channel;
+            this.mapWindow = mapWindow;
+        }
+
+        private ByteBuffer map(long length) throws IOException {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            crc.update(buffer.duplicate());
+            position += length;
+            return buffer;
+        }
+
+        private int[] ints(int count) throws IOException {
+            int[] values = new int[TransactionStore.capacityFor(count)];
+            int perWindow = (int) (mapWindow / Integer.BYTES);
+            for (int from = 0; from < count; from += perWindow) {
+                int length = Math.min(perWindow, count - from);
+                map((long) length * Integer.BYTES).asIntBuffer().get(values, from, length);
+            }
+            return values;
+        }
+
+        private long[] longs(int count) throws IOException {
+            long[] values = new long[TransactionStore.capacityFor(count)];
+            int perWindow = (int) (mapWindow / Long.BYTES);
+            for (int from = 0; from < count; from += perWindow) {
+                int length = Math.min(perWindow, count - from);
+                map((long) length * Long.BYTES).asLongBuffer().get(values, from, length);
+            }
+            return values;
+        }
+
+        private double[] doubles(int count) throws IOException {
+            double[] values = new double[TransactionStore.capacityFor(count)];
+            int perWindow = (int) (mapWindow / Double.BYTES);
+            for (int from = 0; from < count; from += perWindow) {
+                int length = Math.min(perWindow, count - from);
+                map((long) length * Double.BYTES).asDoubleBuffer().get(values, from, length);
+            }
+            return values;
+        }
+
+        /**
+         * Reads a section of count strings spanning the given number of bytes into the dictionary
+         */
+        private void strings(long bytes, int count, StringDictionary dictionary) throws IOException {
+            sectionEnd = position + bytes;
+            window = ByteBuffer.allocate(0);
+            for (int code = 0; code < count; code++) {
+                get(intBytes);
+                int length = ByteBuffer.wrap(intBytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
+                String value = null;
+                //checked before allocating, a corrupt length must not become a huge or negative array
+                if (length < NULL_STRING || length > sectionEnd - position + window.remaining()) {
+                    throw new IOException("Corrupt string length " + length + " in snapshot");
+                }
+                if (length != NULL_STRING) {
+                    byte[] utf8 = new byte[length];
+                    get(utf8);
+                    value = new String(utf8, StandardCharsets.UTF_8);
+                }
+                if (dictionary.encode(value) != code) {
+                    throw new IOException("Duplicate dictionary entry " + value + " in snapshot");
+                }
+            }
+            if (window.hasRemaining() || position != sectionEnd) {
+                throw new IOException("Unexpected bytes after " + count + " strings in snapshot");
+            }
+        }
+
+        private void get(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                if (!window.hasRemaining()) {
+                    if (position >= sectionEnd) {
+                        throw new IOException("Snapshot string section ends early");
+                    }
+                    window = map(Math.min(mapWindow, sectionEnd - position));
+                }
+                int length = Math.min(window.remaining(), bytes.length - offset);
+                window.get(bytes, offset, length);
+                offset += length;
+            }
+        }
+    }
+}
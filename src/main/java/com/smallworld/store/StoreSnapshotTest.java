@@ -0,0 +1,83 @@
+package com.smallworld.store;
+
+import com.smallworld.data.Transaction;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class StoreSnapshotTest {
+
+    @Test
+    public void test_Read_ShouldReassembleColumnsAndStringsMappedInSmallWindows() throws IOException {
+        TransactionStore store = new TransactionStore();
+        for (int mtn = 0; mtn < 1000; mtn++) {
+            store.add(new Transaction(mtn, mtn * 0.5, "Sender with a long name " + mtn % 37, 30,
+                    mtn % 5 == 0 ? null : "Beneficiary " + mtn, 40, mtn % 3 == 0 ? mtn : null, mtn % 2 == 0,
+                    "Message " + mtn % 11, (long) mtn));
+        }
+        Path directory = Files.createTempDirectory("snapshots");
+        Path snapshot = directory.resolve("store.snapshot");
+        try {
+            Files.writeString(snapshot, "previous snapshot");
+            StoreSnapshot.write(store, snapshot);
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals("The temporary file should be moved over the target", 1, files.count());
+            }
+
+            //8 byte windows split every string and every column into many mappings
+            TransactionStore restored = StoreSnapshot.read(snapshot, 8);
+            assertEquals(store.size(), restored.size());
+            assertEquals(store.issueCount(), restored.issueCount());
+            for (int row = 0; row < store.size(); row++) {
+                assertEquals(store.toTransaction(row).toString(), restored.toTransaction(row).toString());
+            }
+            for (int issue = 0; issue < store.issueCount(); issue++) {
+                assertEquals(store.isIssueSolved(issue), restored.isIssueSolved(issue));
+                assertEquals(store.getIssueMessage(issue), restored.getIssueMessage(issue));
+            }
+        } finally {
+            Files.deleteIfExists(snapshot);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void test_Read_ShouldRejectCorruptCountsAndLengthsWithIOException() throws IOException {
+        TransactionStore store = new TransactionStore();
+        store.add(new Transaction(1, 10.0, "Tom Shelby", 30, "Aunt Polly", 40, 1, false, "Issue 1", 5L));
+        Path snapshot = Files.createTempFile("store", ".snapshot");
+        try {
+            StoreSnapshot.write(store, snapshot);
+            byte[] valid = Files.readAllBytes(snapshot);
+            ByteBuffer header = ByteBuffer.wrap(valid).order(ByteOrder.LITTLE_ENDIAN);
+            int strings = (int) (valid.length - header.getLong(24) - header.getLong(32));
+
+            //row count, then the length of the first client name
+            assertCorrupt(snapshot, valid, 8, -2);
+            for (int length : new int[]{-2, Integer.MIN_VALUE, Integer.MAX_VALUE, 1 << 20}) {
+                assertCorrupt(snapshot, valid, strings, length);
+            }
+        } finally {
+            Files.deleteIfExists(snapshot);
+        }
+    }
+
+    private static void assertCorrupt(Path snapshot, byte[] valid, int offset, int value) throws IOException {
+        byte[] corrupt = valid.clone();
+        ByteBuffer.wrap(corrupt).order(ByteOrder.LITTLE_ENDIAN).putInt(offset, value);
+        Files.write(snapshot, corrupt);
+        try {
+            StoreSnapshot.read(snapshot);
+            fail("Reading " + value + " at offset " + offset + " should fail");
+        } catch (IOException e) {
+            //expected
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.smallworld.store;
+
+import java.util.Arrays;
+
+/**
+ * Assigns a dense int code to every distinct string, so columns can store names and messages as ints and
+ * compare them without String.equals. Codes are handed out in first-seen order starting from 0.
+ *
+ * The codes live in an open addressing table next to the hash of every value, so lookups neither box nor
+ * rehash, and a string can be looked up straight from a parser's character buffer without creating it first.
+ */
+public class StringDictionary {
+
+    public static final int NOT_FOUND = -1;
+
+    //code + 1 per slot, 0 marks an empty slot
+    private int[] table = new int[32];
+    private int mask = table.length - 1;
+    private String[] values = new String[16];
+    private int[] hashes = new int[16];
+    private int size;
+    //null is a valid value, kept out of the table
+    private int nullCode = NOT_FOUND;
+
+    /**
+     * Returns the code of the string, adding it to the dictionary when it is new
+     */
+    public int encode(String value) {
+        if (value == null) {
+            if (nullCode == NOT_FOUND) {
+                nullCode = append(null, 0);
+            }
+            return nullCode;
+        }
+        int hash = value.hashCode();
+        for (int slot = slotOf(hash); ; slot = (slot + 1) & mask) {
+            int code = table[slot] - 1;
+            if (code < 0) {
+                return insert(slot, value, hash);
+            }
+            if (hashes[code] == hash && value.equals(values[code])) {
+                return code;
+            }
+        }
+    }
+
+    /**
+     * Returns the code of the string made of the given characters, adding it when it is new. Only a new
+     * string is allocated, one that is already known is matched against the characters in place.
+     */
+    public int encode(char[] chars, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        for (int slot = slotOf(hash); ; slot = (slot + 1) & mask) {
+            int code = table[slot] - 1;
+            if (code < 0) {
+                return insert(slot, new String(chars, offset, length), hash);
+            }
+            if (hashes[code] == hash && matches(values[code], chars, offset, length)) {
+                return code;
+            }
+        }
+    }
+
+    /**
+     * Returns the code of the string, or NOT_FOUND when it has never been encoded
+     */
+    public int find(String value) {
+        if (value == null) {
+            return nullCode;
+        }
+        int hash = value.hashCode();
+        for (int slot = slotOf(hash); ; slot = (slot + 1) & mask) {
+            int code = table[slot] - 1;
+            if (code < 0) {
+                return NOT_FOUND;
+            }
+            if (hashes[code] == hash && value.equals(values[code])) {
+                return code;
+            }
+        }
+    }
+
+    public String decode(int code) {
+        return values[code];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int insert(int slot, String value, int hash) {
+        int code = append(value, hash);
+        table[slot] = code + 1;
+        if (size * 2 > table.length) {
+            grow();
+        }
+        return code;
+    }
+
+    private int append(String value, int hash) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        values[size] = value;
+        hashes[size] = hash;
+        return size++;
+    }
+
+    private void grow() {
+        table = new int[table.length * 2];
+        mask = table.length - 1;
+        for (int code = 0; code < size; code++) {
+            if (code != nullCode) {
+                int slot = slotOf(hashes[code]);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = code + 1;
+            }
+        }
+    }
+
+    private int slotOf(int hash) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static boolean matches(String value, char[] chars, int offset, int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,230 @@
+package com.smallworld.store;
+
+import java.util.*;
+
+/**
+ * Pre-aggregated totals per time bucket: amount sum, max amount, row count, open issue count and the amount sent
+ * by every sender. Range queries combine only the buckets they touch instead of scanning rows.
+ *
+ * Ranges are resolved at bucket granularity: a bucket counts towards [from, to) when its start lies in it. Old
+ * buckets can be compacted into wider ones or evicted, which keeps memory bounded on long-running nodes.
+ */
+public class TimeRollups {
+
+    public static final long HOUR = 60 * 60 * 1000L;
+    public static final long DAY = 24 * HOUR;
+
+    private final long bucketMillis;
+    //bucket start to bucket, buckets never overlap and compacted ones are simply wider
+    private final TreeMap<Long, Bucket> buckets = new TreeMap<>();
+    //rows older than this were evicted and are no longer rolled up
+    private long evictedBefore = Long.MIN_VALUE;
+
+    public TimeRollups(long bucketMillis) {
+        if (bucketMillis <= 0) {
+            throw new IllegalArgumentException("Bucket size must be positive but was " + bucketMillis);
+        }
+        this.bucketMillis = bucketMillis;
+    }
+
+    public void addRow(long time, int senderId, double amount) {
+        Bucket bucket = bucketFor(time, true);
+        if (bucket != null) {
+            bucket.addRow(senderId, amount);
+        }
+    }
+
+    public void addOpenIssue(long time) {
+        Bucket bucket = bucketFor(time, true);
+        if (bucket != null) {
+            bucket.openIssues++;
+        }
+    }
+
+    public void removeOpenIssue(long time) {
+        Bucket bucket = bucketFor(time, false);
+        if (bucket != null) {
+            bucket.openIssues--;
+        }
+    }
+
+    /**
+     * Returns the sum of the amounts of the rows in the range
+     */
+    public double getTotal(long from, long to) {
+        double total = 0.0;
+        for (Bucket bucket : range(from, to)) {
+            total += bucket.total;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the highest amount in the range, or 0 when the range has no rows
+     */
+    public double getMax(long from, long to) {
+        double max = 0.0;
+        boolean found = false;
+        for (Bucket bucket : range(from, to)) {
+            if (bucket.rows > 0) {
+                max = found ? Math.max(max, bucket.max) : bucket.max;
+                found = true;
+            }
+        }
+        return max;
+    }
+
+    public double getSentTotal(int senderId, long from, long to) {
+        double total = 0.0;
+        for (Bucket bucket : range(from, to)) {
+            total += bucket.getSent(senderId);
+        }
+        return total;
+    }
+
+    public long getRowCount(long from, long to) {
+        long rows = 0;
+        for (Bucket bucket : range(from, to)) {
+            rows += bucket.rows;
+        }
+        return rows;
+    }
+
+    public long getOpenIssueCount(long from, long to) {
+        long openIssues = 0;
+        for (Bucket bucket : range(from, to)) {
+            openIssues += bucket.openIssues;
+        }
+        return openIssues;
+    }
+
+    /**
+     * Drops every bucket that ends at or before the given time. Rows older than that are ignored from now on.
+     */
+    public void evictBefore(long time) {
+        Iterator<Bucket> iterator = buckets.headMap(time, false).values().iterator();
+        while (iterator.hasNext()) {
+            Bucket bucket = iterator.next();
+            if (bucket.end() <= time) {
+                iterator.remove();
+            }
+        }
+        evictedBefore = Math.max(evictedBefore, time);
+    }
+
+    /**
+     * Merges the buckets of every complete window of the given width that ends at or before the given time into
+     * a single bucket, e.g. hourly buckets older than a week into daily ones. Buckets at least as wide as the
+     * window, e.g. left by an earlier compaction into weeks, are kept as they are. The width must be a multiple of
+     * the width of the buckets it merges.
+     */
+    public void compactBefore(long time, long windowMillis) {
+        for (Bucket bucket : buckets.headMap(time, false).values()) {
+            if (bucket.width < windowMillis && windowMillis % bucket.width != 0) {
+                throw new IllegalArgumentException("Cannot compact buckets of " + bucket.width + " ms into "
+                        + windowMillis + " ms");
+            }
+        }
+        Map<Long, Bucket> windows = new TreeMap<>();
+        Iterator<Bucket> iterator = buckets.headMap(time, false).values().iterator();
+        while (iterator.hasNext()) {
+            Bucket bucket = iterator.next();
+            long windowStart = Math.floorDiv(bucket.start, windowMillis) * windowMillis;
+            if (windowStart + windowMillis <= time && bucket.width < windowMillis) {
+                iterator.remove();
+                windows.computeIfAbsent(windowStart, start -> new Bucket(start, windowMillis)).merge(bucket);
+            }
+        }
+        for (Bucket window : windows.values()) {
+            buckets.put(window.start, window);
+        }
+    }
+
+    public int bucketCount() {
+        return buckets.size();
+    }
+
+    private Collection<Bucket> range(long from, long to) {
+        if (from >= to) {
+            return Collections.emptyList();
+        }
+        return buckets.subMap(from, true, to, false).values();
+    }
+
+    /**
+     * Returns the bucket covering the time, creating a base bucket when asked to and the time was not evicted
+     */
+    private Bucket bucketFor(long time, boolean create) {
+        Map.Entry<Long, Bucket> floor = buckets.floorEntry(time);
+        if (floor != null && time < floor.getValue().end()) {
+            return floor.getValue();
+        }
+        if (!create || time < evictedBefore) {
+            return null;
+        }
+        long start = Math.floorDiv(time, bucketMillis) * bucketMillis;
+        Bucket bucket = new Bucket(start, bucketMillis);
+        buckets.put(start, bucket);
+        return bucket;
+    }
+
+    private static class Bucket {
+        private final long start;
+        private final long width;
+        private double total;
+        private double max;
+        private long rows;
+        private long openIssues;
+        //sent amounts, one slot per sender seen in the bucket
+        private final IntIntMap senderSlots = new IntIntMap();
+        private int[] slotSenders = new int[8];
+        private double[] slotSent = new double[8];
+
+        private Bucket(long start, long width) {
+            this.start = start;
+            this.width = width;
+        }
+
+        private long end() {
+            return start + width;
+        }
+
+        private void addRow(int senderId, double amount) {
+            total += amount;
+            max = rows == 0 ? amount : Math.max(max, amount);
+            rows++;
+            addSent(senderId, amount);
+        }
+
+        private void addSent(int senderId, double amount) {
+            int slot = senderSlots.get(senderId);
+            if (slot < 0) {
+                slot = senderSlots.size();
+                if (slot == slotSenders.length) {
+                    slotSenders = Arrays.copyOf(slotSenders, slot * 2);
+                    slotSent = Arrays.copyOf(slotSent, slot * 2);
+                }
+                slotSenders[slot] = senderId;
+                senderSlots.put(senderId, slot);
+            }
+            slotSent[slot] += amount;
+        }
+
+        private double getSent(int senderId) {
+            int slot = senderSlots.get(senderId);
+            return slot < 0 ? 0.0 : slotSent[slot];
+        }
+
+        private void merge(Bucket other) {
+            total += other.total;
+            if (other.rows > 0) {
+                max = rows == 0 ? other.max : Math.max(max, other.max);
+            }
+            rows += other.rows;
+            openIssues += other.openIssues;
+            for (int slot = 0; slot < other.senderSlots.size(); slot++) {
+                addSent(other.slotSenders[slot], other.slotSent[slot]);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.smallworld.store;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the k rows with the highest amount seen so far in a bounded min-heap. On equal amounts the row that was
+ * added to the store first ranks higher, which matches a stable sort of the rows by amount descending.
+ */
+public class TopRows {
+
+    private final int capacity;
+    private final int[] rows;
+    private final double[] amounts;
+    private int size;
+
+    public TopRows(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Negative capacity " + capacity);
+        }
+        this.capacity = capacity;
+        this.rows = new int[capacity];
+        this.amounts = new double[capacity];
+    }
+
+    /**
+     * Offers a row, keeping it only when it ranks among the top k
+     */
+    public void offer(int row, double amount) {
+        if (size < capacity) {
+            rows[size] = row;
+            amounts[size] = amount;
+            siftUp(size++);
+        } else if (capacity > 0 && ranksAbove(row, amount, 0)) {
+            rows[0] = row;
+            amounts[0] = amount;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Offers every row kept by another instance, used to merge the top rows of separate chunks
+     */
+    public void offerAll(TopRows other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.rows[i], other.amounts[i]);
+        }
+    }
+
+    /**
+     * Returns the kept rows, best first
+     */
+    public int[] toSortedRows() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> a.equals(b) ? 0 : ranksAbove(rows[a], amounts[a], b) ? -1 : 1);
+        int[] sorted = new int[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = rows[order[i]];
+        }
+        return sorted;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    //whether the given row ranks above the row kept at the heap slot
+    private boolean ranksAbove(int row, double amount, int slot) {
+        int byAmount = Double.compare(amount, amounts[slot]);
+        return byAmount > 0 || (byAmount == 0 && row < rows[slot]);
+    }
+
+    private void siftUp(int slot) {
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (!ranksAbove(rows[parent], amounts[parent], slot)) {
+                return;
+            }
+            swap(slot, parent);
+            slot = parent;
+        }
+    }
+
+    private void siftDown(int slot) {
+        while (true) {
+            int worst = slot;
+            int left = 2 * slot + 1;
+            int right = left + 1;
+            if (left < size && ranksAbove(rows[worst], amounts[worst], left)) {
+                worst = left;
+            }
+            if (right < size && ranksAbove(rows[worst], amounts[worst], right)) {
+                worst = right;
+            }
+            if (worst == slot) {
+                return;
+            }
+            swap(slot, worst);
+            slot = worst;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int row = rows[a];
+        rows[a] = rows[b];
+        rows[b] = row;
+        double amount = amounts[a];
+        amounts[a] = amounts[b];
+        amounts[b] = amount;
+    }
+}
@@ -0,0 +1,316 @@
+package com.smallworld.store;
+
+import com.smallworld.data.Transaction;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Columnar storage for transactions. Every unique transaction (one per mtn) is a row spread over primitive
+ * arrays, client names are dictionary encoded and issues live in their own set of columns linked to the row
+ * they belong to.
+ */
+public class TransactionStore {
+
+    public static final int NO_ISSUE = -1;
+    public static final long NO_TIME = Long.MIN_VALUE;
+    /**
+     * Rows are summed in blocks of this size, and every block sum is then added in block order. Running totals
+     * and sequential or parallel scans all follow this order, so they agree on every floating point sum.
+     */
+    public static final int BLOCK_SIZE = 4096;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final StringDictionary clients = new StringDictionary();
+    private final StringDictionary messages = new StringDictionary();
+    private final IntIntMap rowsByMtn = new IntIntMap();
+    private final IntIntMap issuesById = new IntIntMap();
+
+    //transaction columns, one entry per row
+    private int size;
+    private int[] mtn = new int[INITIAL_CAPACITY];
+    private double[] amount = new double[INITIAL_CAPACITY];
+    private int[] senderId = new int[INITIAL_CAPACITY];
+    private int[] senderAge = new int[INITIAL_CAPACITY];
+    private int[] beneficiaryId = new int[INITIAL_CAPACITY];
+    private int[] beneficiaryAge = new int[INITIAL_CAPACITY];
+    private long[] eventTime = new long[INITIAL_CAPACITY];
+    private int[] firstIssue = new int[INITIAL_CAPACITY];
+    private final BitSet issuePresent = new BitSet();
+    private final BitSet openIssuePresent = new BitSet();
+
+    //issue columns, one entry per distinct issue id
+    private int issueCount;
+    private int[] issueId = new int[INITIAL_CAPACITY];
+    private int[] issueRow = new int[INITIAL_CAPACITY];
+    private int[] issueMessageId = new int[INITIAL_CAPACITY];
+    private int[] nextIssue = new int[INITIAL_CAPACITY];
+    private final BitSet issueSolved = new BitSet();
+
+    /**
+     * Adds a row of the transaction/issue join. Rows of a transaction that is already stored only contribute
+     * their issue. Returns the row of the transaction.
+     */
+    public int add(Transaction transaction) {
+        int row = rowsByMtn.get(transaction.getMtn());
+        if (row < 0) {
+            row = addRow(transaction);
+        }
+        Integer id = transaction.getIssueId();
+        if (id != null && issuesById.get(id) < 0) {
+            addIssue(row, id, transaction.isIssueSolved(), transaction.getIssueMessage());
+        }
+        return row;
+    }
+
+    private int addRow(Transaction transaction) {
+        if (size == mtn.length) {
+            int capacity = size * 2;
+            mtn = Arrays.copyOf(mtn, capacity);
+            amount = Arrays.copyOf(amount, capacity);
+            senderId = Arrays.copyOf(senderId, capacity);
+            senderAge = Arrays.copyOf(senderAge, capacity);
+            beneficiaryId = Arrays.copyOf(beneficiaryId, capacity);
+            beneficiaryAge = Arrays.copyOf(beneficiaryAge, capacity);
+            eventTime = Arrays.copyOf(eventTime, capacity);
+            firstIssue = Arrays.copyOf(firstIssue, capacity);
+        }
+        int row = size++;
+        mtn[row] = transaction.getMtn();
+        amount[row] = transaction.getAmount();
+        senderId[row] = clients.encode(transaction.getSenderFullName());
+        senderAge[row] = transaction.getSenderAge();
+        beneficiaryId[row] = clients.encode(transaction.getBeneficiaryFullName());
+        beneficiaryAge[row] = transaction.getBeneficiaryAge();
+        eventTime[row] = transaction.getTimestamp() == null ? NO_TIME : transaction.getTimestamp();
+        firstIssue[row] = NO_ISSUE;
+        rowsByMtn.put(mtn[row], row);
+        return row;
+    }
+
+    private void addIssue(int row, int id, boolean solved, String message) {
+        if (issueCount == issueId.length) {
+            int capacity = issueCount * 2;
+            issueId = Arrays.copyOf(issueId, capacity);
+            issueRow = Arrays.copyOf(issueRow, capacity);
+            issueMessageId = Arrays.copyOf(issueMessageId, capacity);
+            nextIssue = Arrays.copyOf(nextIssue, capacity);
+        }
+        int issue = issueCount++;
+        issueId[issue] = id;
+        issueRow[issue] = row;
+        issueMessageId[issue] = messages.encode(message);
+        issueSolved.set(issue, solved);
+        issuesById.put(id, issue);
+
+        //appending to the end of the row's issue chain to keep the issues in input order
+        nextIssue[issue] = NO_ISSUE;
+        if (firstIssue[row] == NO_ISSUE) {
+            firstIssue[row] = issue;
+        } else {
+            int last = firstIssue[row];
+            while (nextIssue[last] != NO_ISSUE) {
+                last = nextIssue[last];
+            }
+            nextIssue[last] = issue;
+        }
+        issuePresent.set(row);
+        if (!solved) {
+            openIssuePresent.set(row);
+        }
+    }
+
+    /**
+     * Installs columns read from a snapshot into this empty store and rebuilds the lookups and issue chains
+     * derived from them. The arrays are used as they are, so they must be at least capacityFor(count) long.
+     */
+    void restore(int rowCount, int[] mtn, double[] amount, int[] senderId, int[] senderAge,
+                 int[] beneficiaryId, int[] beneficiaryAge, long[] eventTime,
+                 int issueCount, int[] issueId, int[] issueRow, int[] issueMessageId, BitSet issueSolved) {
+        this.size = rowCount;
+        this.mtn = mtn;
+        this.amount = amount;
+        this.senderId = senderId;
+        this.senderAge = senderAge;
+        this.beneficiaryId = beneficiaryId;
+        this.beneficiaryAge = beneficiaryAge;
+        this.eventTime = eventTime;
+        this.firstIssue = new int[mtn.length];
+        for (int row = 0; row < rowCount; row++) {
+            firstIssue[row] = NO_ISSUE;
+            rowsByMtn.put(mtn[row], row);
+        }
+
+        this.issueCount = issueCount;
+        this.issueId = issueId;
+        this.issueRow = issueRow;
+        this.issueMessageId = issueMessageId;
+        this.nextIssue = new int[issueId.length];
+        this.issueSolved.or(issueSolved);
+        //issues are stored in input order, so linking them in slot order rebuilds every chain as it was
+        int[] lastIssue = new int[rowCount];
+        for (int issue = 0; issue < issueCount; issue++) {
+            int row = issueRow[issue];
+            nextIssue[issue] = NO_ISSUE;
+            if (firstIssue[row] == NO_ISSUE) {
+                firstIssue[row] = issue;
+            } else {
+                nextIssue[lastIssue[row]] = issue;
+            }
+            lastIssue[row] = issue;
+            issuesById.put(issueId[issue], issue);
+            issuePresent.set(row);
+            if (!issueSolved.get(issue)) {
+                openIssuePresent.set(row);
+            }
+        }
+    }
+
+    /**
+     * Returns the column length to allocate for the given number of rows or issues
+     */
+    static int capacityFor(int count) {
+        return Math.max(count, INITIAL_CAPACITY);
+    }
+
+    /**
+     * Returns the issue slot of the issue id, or NO_ISSUE when it is not stored
+     */
+    public int findIssue(int id) {
+        int issue = issuesById.get(id);
+        return issue < 0 ? NO_ISSUE : issue;
+    }
+
+    /**
+     * Marks the issue as solved. Returns false when it was already solved.
+     */
+    public boolean solveIssue(int issue) {
+        if (issueSolved.get(issue)) {
+            return false;
+        }
+        issueSolved.set(issue);
+        int row = issueRow[issue];
+        boolean open = false;
+        for (int other = firstIssue[row]; other != NO_ISSUE && !open; other = nextIssue[other]) {
+            open = !issueSolved.get(other);
+        }
+        openIssuePresent.set(row, open);
+        return true;
+    }
+
+    /**
+     * Rebuilds a transaction object for the row. Issue fields are taken from its first issue.
+     */
+    public Transaction toTransaction(int row) {
+        int issue = firstIssue[row];
+        return new Transaction(mtn[row], amount[row],
+                clients.decode(senderId[row]), senderAge[row],
+                clients.decode(beneficiaryId[row]), beneficiaryAge[row],
+                issue == NO_ISSUE ? null : issueId[issue],
+                issue == NO_ISSUE || issueSolved.get(issue),
+                issue == NO_ISSUE ? null : messages.decode(issueMessageId[issue]),
+                eventTime[row] == NO_TIME ? null : eventTime[row]);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public static int blockOf(int row) {
+        return row / BLOCK_SIZE;
+    }
+
+    public int getMtn(int row) {
+        return mtn[row];
+    }
+
+    public double getAmount(int row) {
+        return amount[row];
+    }
+
+    public int getSenderId(int row) {
+        return senderId[row];
+    }
+
+    public int getBeneficiaryId(int row) {
+        return beneficiaryId[row];
+    }
+
+    /**
+     * Returns the event time of the row in epoch milliseconds, or NO_TIME when the row has none
+     */
+    public long getEventTime(int row) {
+        return eventTime[row];
+    }
+
+    int getSenderAge(int row) {
+        return senderAge[row];
+    }
+
+    int getBeneficiaryAge(int row) {
+        return beneficiaryAge[row];
+    }
+
+    public boolean hasIssue(int row) {
+        return issuePresent.get(row);
+    }
+
+    public boolean hasOpenIssue(int row) {
+        return openIssuePresent.get(row);
+    }
+
+    /**
+     * Returns the first issue of the row, or NO_ISSUE
+     */
+    public int getFirstIssue(int row) {
+        return firstIssue[row];
+    }
+
+    /**
+     * Returns the issue following the given one on the same row, or NO_ISSUE
+     */
+    public int getNextIssue(int issue) {
+        return nextIssue[issue];
+    }
+
+    public int issueCount() {
+        return issueCount;
+    }
+
+    public int getIssueId(int issue) {
+        return issueId[issue];
+    }
+
+    public int getIssueRow(int issue) {
+        return issueRow[issue];
+    }
+
+    public boolean isIssueSolved(int issue) {
+        return issueSolved.get(issue);
+    }
+
+    /**
+     * Returns the first open issue at or after the given slot, or NO_ISSUE
+     */
+    public int nextOpenIssue(int from) {
+        int issue = issueSolved.nextClearBit(from);
+        return issue < issueCount ? issue : NO_ISSUE;
+    }
+
+    public String getIssueMessage(int issue) {
+        return messages.decode(issueMessageId[issue]);
+    }
+
+    int getIssueMessageId(int issue) {
+        return issueMessageId[issue];
+    }
+
+    public StringDictionary getClients() {
+        return clients;
+    }
+
+    StringDictionary getMessages() {
+        return messages;
+    }
+}